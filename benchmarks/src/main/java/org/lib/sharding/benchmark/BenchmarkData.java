@@ -0,0 +1,52 @@
+package org.lib.sharding.benchmark;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import org.lib.sharding.domain.ClusterNode;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.jgroups.util.UUID.randomUUID;
+
+class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    static List<ClusterNode> nodes(int count) {
+        ImmutableList.Builder<ClusterNode> nodes = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            ClusterNode node = new ClusterNode(randomUUID());
+            node.getProperties().put("index", i);
+            node.getProperties().put(ClusterNode.WEIGHT, 1.0);
+            nodes.add(node);
+        }
+        return nodes.build();
+    }
+
+    /**
+     * Use a power of two count, so a key can be picked with a mask.
+     */
+    static long[] keys(int count, long seed) {
+        return new Random(seed).longs(count).toArray();
+    }
+}
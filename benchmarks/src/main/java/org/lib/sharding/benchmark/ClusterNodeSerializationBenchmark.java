@@ -0,0 +1,127 @@
+package org.lib.sharding.benchmark;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jgroups.util.ByteArrayDataInputStream;
+import org.jgroups.util.Streamable;
+import org.jgroups.util.Util;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java serialization, the previous way nodes travelled in RPC arguments and state transfer,
+ * against the binary Streamable form. Payload sizes are reported as the bytes secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterNodeSerializationBenchmark {
+
+    @Param({"3", "64", "1024"})
+    private int nodesCount;
+
+    @Param({"java", "streamable"})
+    private String format;
+
+    private ClusterNode node;
+    private RoutingTable table;
+    private byte[] nodeBytes;
+    private byte[] tableBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        table = new RoutingTable(1, BenchmarkData.nodes(nodesCount));
+        node = table.getNodes().get(0);
+
+        nodeBytes = write(node);
+        tableBytes = write(table);
+    }
+
+    @Benchmark
+    public byte[] writeNode(PayloadSize size) throws Exception {
+        byte[] bytes = write(node);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object readNode(PayloadSize size) throws Exception {
+        size.bytes = nodeBytes.length;
+        if ("java".equals(format)) {
+            return readObject(nodeBytes);
+        }
+        return ClusterNode.readNode(new ByteArrayDataInputStream(nodeBytes));
+    }
+
+    @Benchmark
+    public byte[] writeTable(PayloadSize size) throws Exception {
+        byte[] bytes = write(table);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object readTable(PayloadSize size) throws Exception {
+        size.bytes = tableBytes.length;
+        if ("java".equals(format)) {
+            return readObject(tableBytes);
+        }
+        return Util.streamableFromByteBuffer(RoutingTable.class, tableBytes);
+    }
+
+    /**
+     * Serialized size of the payload a benchmark writes or reads, reported next to the throughput.
+     * JMH resets the counter before every iteration, so each operation stores it again.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+    }
+
+    private <T extends Streamable & Serializable> byte[] write(T value) throws Exception {
+        if ("java".equals(format)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+            return bytes.toByteArray();
+        }
+        return Util.streamableToByteBuffer(value);
+    }
+
+    private static Object readObject(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
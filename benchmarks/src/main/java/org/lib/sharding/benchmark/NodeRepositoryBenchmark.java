@@ -0,0 +1,96 @@
+package org.lib.sharding.benchmark;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableSet;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.LockFreeNodeRepository;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.repository.SimpleNodeRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeRepositoryBenchmark {
+
+    @Param({"3", "64", "1024"})
+    private int nodesCount;
+
+    @Param({"simple", "lockFree"})
+    private String implementation;
+
+    private NodeRepository repository;
+    private ClusterNode self;
+    private ClusterNode middle;
+    private Set<ClusterNode> allNodes;
+    private Set<ClusterNode> allButLastNodes;
+    private boolean full;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        List<ClusterNode> nodes = BenchmarkData.nodes(nodesCount);
+
+        self = nodes.get(0);
+        middle = nodes.get(nodesCount / 2);
+        allNodes = ImmutableSet.copyOf(nodes);
+        allButLastNodes = ImmutableSet.copyOf(nodes.subList(0, nodesCount - 1));
+
+        repository = "lockFree".equals(implementation) ? new LockFreeNodeRepository() : new SimpleNodeRepository();
+        repository.setNodes(nodes);
+        full = true;
+    }
+
+    @Benchmark
+    public List<ClusterNode> getNodes() {
+        return repository.getNodes();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<ClusterNode> getNodesContended() {
+        return repository.getNodes();
+    }
+
+    /**
+     * Every invocation either drops the last node or adds it back.
+     */
+    @Benchmark
+    public int sync() {
+        full = !full;
+        repository.sync(full ? allNodes : allButLastNodes, self);
+        return repository.size();
+    }
+
+    @Benchmark
+    public int removeAndAdd() {
+        repository.remove(middle);
+        repository.add(middle);
+        return repository.size();
+    }
+}
@@ -0,0 +1,103 @@
+package org.lib.sharding.benchmark;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.Injector;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.service.ClientNodeRouter;
+import org.lib.sharding.service.KeyHasher;
+import org.lib.sharding.service.Md5KeyHasher;
+import org.lib.sharding.service.Murmur3KeyHasher;
+import org.lib.sharding.service.RendezvousRoutingStrategy;
+import org.lib.sharding.service.RingRoutingStrategy;
+import org.lib.sharding.service.RoutingStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.Guice.createInjector;
+
+/**
+ * Routing throughput of a single key, for both the primitive and the boxed path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"3", "64", "1024"})
+    private int nodesCount;
+
+    @Param({"murmur3", "md5"})
+    private String hasher;
+
+    @Param({"jump", "ring", "rendezvous"})
+    private String strategy;
+
+    private ClientNodeRouter router;
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private final long[] keys = BenchmarkData.keys(1024, Thread.currentThread().getId());
+        private int index;
+
+        long next() {
+            return keys[index++ & (keys.length - 1)];
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Class<? extends KeyHasher> hasherClass = "md5".equals(hasher) ? Md5KeyHasher.class : Murmur3KeyHasher.class;
+
+        Injector injector = createInjector(binder -> {
+            binder.bind(KeyHasher.class).to(hasherClass);
+            if ("ring".equals(strategy)) {
+                binder.bind(RoutingStrategy.class).to(RingRoutingStrategy.class);
+            } else if ("rendezvous".equals(strategy)) {
+                binder.bind(RoutingStrategy.class).to(RendezvousRoutingStrategy.class);
+            }
+        });
+
+        injector.getInstance(NodeRepository.class).setNodes(BenchmarkData.nodes(nodesCount));
+        router = injector.getInstance(ClientNodeRouter.class);
+    }
+
+    @Benchmark
+    public ClusterNode primitive(Keys keys) {
+        return router.getNodeByKey(keys.next());
+    }
+
+    @Benchmark
+    public ClusterNode boxed(Keys keys) {
+        return router.getNodeByKey(Long.valueOf(keys.next()));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ClusterNode primitiveContended(Keys keys) {
+        return router.getNodeByKey(keys.next());
+    }
+}
@@ -19,6 +19,8 @@ package org.lib.sharding.configuration;
  * limitations under the License.
  */
 
+import org.lib.sharding.domain.ClusterNode;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -30,7 +32,126 @@ public class ClusterPropertiesConfiguration {
     @Named("sharding.cluster.config")
     private String clusterConfig;
 
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.node.weight")
+    private double nodeWeight = ClusterNode.DEFAULT_WEIGHT;
+
+    /**
+     * Overall deadline of collecting node info from all members, in milliseconds.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.discovery.timeout")
+    private long discoveryTimeout = 1000L;
+
+    /**
+     * How long the node which changed the routing table waits for members to accept it, in milliseconds.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.publish.timeout")
+    private long publishTimeout = 1000L;
+
+    /**
+     * How many last routing table deltas are kept to bring a lagging member up to date,
+     * a member which is further behind receives the whole table.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.delta.history")
+    private int deltaHistorySize = 64;
+
+    /**
+     * How long a view change waits for the next ones before the nodes list is updated, in milliseconds.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.update.delay")
+    private long updateDelay = 0L;
+
+    /**
+     * Longest time a burst of view changes puts the nodes list update off, in milliseconds.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.update.maxDelay")
+    private long updateMaxDelay = 1000L;
+
+    /**
+     * Only the view coordinator updates the nodes list, instead of every node competing for the cluster lock.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.update.coordinatorOnly")
+    private boolean coordinatorOnly = false;
+
+    /**
+     * How often the node sends the demand its router has seen to the cluster, in milliseconds. Zero disables it.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.load.period")
+    private long loadReportPeriod = 0L;
+
+    /**
+     * Longest time a membership change keeps the async routing calls waiting for the new table, in milliseconds.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.transition.timeout")
+    private long transitionTimeout = 10000L;
+
+    /**
+     * Members serve the routing tables to the clients which aren't cluster members, see {@code RoutingTablePublisher}.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.clients.enabled")
+    private boolean clientsEnabled = false;
+
+    /**
+     * JGroups stack of the channel through which the clients reach the members, it must not be the cluster one.
+     */
+    @com.google.inject.Inject(optional = true)
+    @Named("sharding.cluster.clients.config")
+    private String clientsConfig = null;
+
     public String getClusterConfig() {
         return clusterConfig;
     }
+
+    public double getNodeWeight() {
+        return nodeWeight;
+    }
+
+    public long getDiscoveryTimeout() {
+        return discoveryTimeout;
+    }
+
+    public long getPublishTimeout() {
+        return publishTimeout;
+    }
+
+    public int getDeltaHistorySize() {
+        return deltaHistorySize;
+    }
+
+    public long getUpdateDelay() {
+        return updateDelay;
+    }
+
+    public long getUpdateMaxDelay() {
+        return updateMaxDelay;
+    }
+
+    public boolean isCoordinatorOnly() {
+        return coordinatorOnly;
+    }
+
+    public long getLoadReportPeriod() {
+        return loadReportPeriod;
+    }
+
+    public long getTransitionTimeout() {
+        return transitionTimeout;
+    }
+
+    public boolean isClientsEnabled() {
+        return clientsEnabled;
+    }
+
+    public String getClientsConfig() {
+        return clientsConfig;
+    }
 }
@@ -0,0 +1,88 @@
+package org.lib.sharding.configuration;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.Inject;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Metrics settings, all of them are optional.
+ */
+@Singleton
+public class MetricsPropertiesConfiguration {
+
+    /**
+     * Measures every routing call and counts keys per node, it costs two clock reads per call.
+     */
+    @Inject(optional = true)
+    @Named("sharding.metrics.routing")
+    private boolean routing = false;
+
+    /**
+     * Period of the {@code MetricsReporter} calls in milliseconds, zero disables reporting.
+     */
+    @Inject(optional = true)
+    @Named("sharding.metrics.reportPeriod")
+    private long reportPeriod = 0;
+
+    /**
+     * Share of the routed keys the skew analyzer looks at, zero disables it.
+     */
+    @Inject(optional = true)
+    @Named("sharding.metrics.skew.sampleRate")
+    private double skewSampleRate = 0;
+
+    /**
+     * Heavy hitter keys the skew analyzer keeps.
+     */
+    @Inject(optional = true)
+    @Named("sharding.metrics.skew.topKeys")
+    private int skewTopKeys = 16;
+
+    /**
+     * Length of the skew analyzer windows in milliseconds, the reports cover the last one or two of them.
+     */
+    @Inject(optional = true)
+    @Named("sharding.metrics.skew.window")
+    private long skewWindow = 60000L;
+
+    public boolean isRouting() {
+        return routing;
+    }
+
+    public long getReportPeriod() {
+        return reportPeriod;
+    }
+
+    public double getSkewSampleRate() {
+        return skewSampleRate;
+    }
+
+    public int getSkewTopKeys() {
+        return skewTopKeys;
+    }
+
+    public long getSkewWindow() {
+        return skewWindow;
+    }
+}
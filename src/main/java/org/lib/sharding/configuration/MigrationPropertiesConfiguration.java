@@ -0,0 +1,86 @@
+package org.lib.sharding.configuration;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.Inject;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Data migration settings, all of them are optional.
+ */
+@Singleton
+public class MigrationPropertiesConfiguration {
+
+    /**
+     * Threads which write batches to the new owners, shared by all migrations.
+     */
+    @Inject(optional = true)
+    @Named("sharding.migration.threads")
+    private int threads = 4;
+
+    @Inject(optional = true)
+    @Named("sharding.migration.batchSize")
+    private int batchSize = 256;
+
+    /**
+     * Entries per second of all migrations, zero is unlimited.
+     */
+    @Inject(optional = true)
+    @Named("sharding.migration.rate")
+    private double rate = 0;
+
+    /**
+     * Bytes per second of all migrations, zero is unlimited.
+     */
+    @Inject(optional = true)
+    @Named("sharding.migration.bandwidth")
+    private double bandwidth = 0;
+
+    /**
+     * Milliseconds a superseded migration is given to finish the batches being written,
+     * the next migration starts when they have passed.
+     */
+    @Inject(optional = true)
+    @Named("sharding.migration.cancelTimeout")
+    private long cancelTimeout = 10000;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    public long getCancelTimeout() {
+        return cancelTimeout;
+    }
+}
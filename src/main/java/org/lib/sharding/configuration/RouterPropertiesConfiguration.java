@@ -0,0 +1,118 @@
+package org.lib.sharding.configuration;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.Inject;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Routing settings, all of them are optional.
+ */
+@Singleton
+public class RouterPropertiesConfiguration {
+
+    @Inject(optional = true)
+    @Named("sharding.router.ring.virtualNodes")
+    private int virtualNodes = 160;
+
+    /**
+     * Zero disables the cache.
+     */
+    @Inject(optional = true)
+    @Named("sharding.router.cache.size")
+    private int cacheSize = 0;
+
+    @Inject(optional = true)
+    @Named("sharding.router.cache.concurrency")
+    private int cacheConcurrency = 16;
+
+    /**
+     * A node whose demand exceeds the average one by this share gives the excess of its keys to the nodes
+     * which have room below this bound, see {@code BoundedLoadRoutingStrategy}.
+     */
+    @Inject(optional = true)
+    @Named("sharding.router.load.epsilon")
+    private double loadEpsilon = 0.25;
+
+    /**
+     * A node starts to give its keys away when its demand exceeds the bound by this share,
+     * and takes them back when the demand falls below the bound.
+     */
+    @Inject(optional = true)
+    @Named("sharding.router.load.hysteresis")
+    private double loadHysteresis = 0.1;
+
+    /**
+     * How often a client which isn't a cluster member fetches the routing table in case a push
+     * has been lost, in milliseconds. Zero disables it.
+     */
+    @Inject(optional = true)
+    @Named("sharding.router.client.refreshPeriod")
+    private long clientRefreshPeriod = 30000L;
+
+    /**
+     * JGroups stack of the channel through which {@code JGroupsRoutingTableSource} reaches the members.
+     */
+    @Inject(optional = true)
+    @Named("sharding.router.client.config")
+    private String clientConfig = null;
+
+    /**
+     * How long a client waits for the members to send their tables, in milliseconds.
+     */
+    @Inject(optional = true)
+    @Named("sharding.router.client.fetchTimeout")
+    private long clientFetchTimeout = 1000L;
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public int getCacheConcurrency() {
+        return cacheConcurrency;
+    }
+
+    public double getLoadEpsilon() {
+        return loadEpsilon;
+    }
+
+    public double getLoadHysteresis() {
+        return loadHysteresis;
+    }
+
+    public long getClientRefreshPeriod() {
+        return clientRefreshPeriod;
+    }
+
+    public String getClientConfig() {
+        return clientConfig;
+    }
+
+    public long getClientFetchTimeout() {
+        return clientFetchTimeout;
+    }
+}
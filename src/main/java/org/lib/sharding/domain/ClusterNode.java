@@ -21,16 +21,56 @@ package org.lib.sharding.domain;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import org.jetbrains.annotations.NotNull;
 import org.jgroups.Address;
+import org.jgroups.util.Bits;
+import org.jgroups.util.SizeStreamable;
+import org.jgroups.util.Util;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-public class ClusterNode implements Serializable {
-    private final Address address;
+/**
+ * Streamable, so JGroups sends a node in a compact binary form instead of the java serialization:
+ * the address, then every property as a name, a type tag and a value. Values of the types
+ * without a tag are still java-serialized.
+ */
+public class ClusterNode implements SizeStreamable, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Relative capacity of the node, a number or a string.
+     */
+    public static final String WEIGHT = "weight";
+    public static final double DEFAULT_WEIGHT = 1.0;
+
+    /**
+     * Requests per second a router sends to the keys placed on the node, a number.
+     */
+    public static final String DEMAND = "demand";
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte SERIALIZED = 6;
+
+    private Address address;
     private final Map<String, Object> properties = new HashMap<>();
 
+    /**
+     * Used by {@link #readNode(DataInput)} only, JGroups can't create a node as a top level value.
+     */
+    ClusterNode() {
+    }
+
     public ClusterNode(Address address) {
         this.address = address;
     }
@@ -66,4 +106,171 @@ public class ClusterNode implements Serializable {
     public Map<String, Object> getProperties() {
         return properties;
     }
+
+    /**
+     * @return advertised weight, or {@link #DEFAULT_WEIGHT} if it's absent or isn't a positive number
+     */
+    public double getWeight() {
+        Object value = properties.get(WEIGHT);
+
+        double weight;
+        if (value instanceof Number) {
+            weight = ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                weight = Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return DEFAULT_WEIGHT;
+            }
+        } else {
+            return DEFAULT_WEIGHT;
+        }
+
+        return weight > 0 && !Double.isInfinite(weight) ? weight : DEFAULT_WEIGHT;
+    }
+
+    /**
+     * @return advertised demand, or {@link Double#NaN} if it's unknown
+     */
+    public double getDemand() {
+        Object value = properties.get(DEMAND);
+        if (!(value instanceof Number)) {
+            return Double.NaN;
+        }
+
+        double demand = ((Number) value).doubleValue();
+        return demand >= 0 && !Double.isInfinite(demand) ? demand : Double.NaN;
+    }
+
+    @Override
+    public int size() {
+        int size = Util.size(address) + Bits.size(properties.size());
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            size += Bits.sizeUTF(property.getKey()) + 1 + valueSize(property.getValue());
+        }
+        return size;
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws Exception {
+        Util.writeAddress(address, out);
+        Bits.writeInt(properties.size(), out);
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            out.writeUTF(property.getKey());
+            writeValue(property.getValue(), out);
+        }
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws Exception {
+        address = Util.readAddress(in);
+        properties.clear();
+        int count = Bits.readInt(in);
+        for (int i = 0; i < count; i++) {
+            properties.put(in.readUTF(), readValue(in));
+        }
+    }
+
+    /**
+     * @return the node written by {@link #writeTo(DataOutput)}
+     */
+    @NotNull
+    public static ClusterNode readNode(@NotNull DataInput in) throws Exception {
+        ClusterNode node = new ClusterNode();
+        node.readFrom(in);
+        return node;
+    }
+
+    public static int size(@NotNull List<ClusterNode> nodes) {
+        int size = Bits.size(nodes.size());
+        for (ClusterNode node : nodes) {
+            size += node.size();
+        }
+        return size;
+    }
+
+    public static void writeNodes(@NotNull List<ClusterNode> nodes, @NotNull DataOutput out) throws Exception {
+        Bits.writeInt(nodes.size(), out);
+        for (ClusterNode node : nodes) {
+            node.writeTo(out);
+        }
+    }
+
+    @NotNull
+    public static List<ClusterNode> readNodes(@NotNull DataInput in) throws Exception {
+        int count = Bits.readInt(in);
+        List<ClusterNode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(readNode(in));
+        }
+        return nodes;
+    }
+
+    private static int valueSize(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return Bits.sizeUTF((String) value);
+        } else if (value instanceof Integer) {
+            return Bits.size((int) value);
+        } else if (value instanceof Long) {
+            return Bits.size((long) value);
+        } else if (value instanceof Double) {
+            return Double.BYTES;
+        } else if (value instanceof Boolean) {
+            return 1;
+        }
+
+        try {
+            return Util.size(Util.objectToByteBuffer(value));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Can't serialize property value " + value, e);
+        }
+    }
+
+    private static void writeValue(Object value, DataOutput out) throws Exception {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            Bits.writeInt((int) value, out);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            Bits.writeLong((long) value, out);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((boolean) value);
+        } else {
+            out.writeByte(SERIALIZED);
+            Util.writeByteBuffer(Util.objectToByteBuffer(value), out);
+        }
+    }
+
+    private static Object readValue(DataInput in) throws Exception {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return Bits.readInt(in);
+            case LONG:
+                return Bits.readLong(in);
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case SERIALIZED:
+                return Util.objectFromByteBuffer(Util.readByteBuffer(in));
+            default:
+                throw new IllegalStateException("Unknown property type " + type);
+        }
+    }
 }
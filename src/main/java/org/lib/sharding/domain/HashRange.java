@@ -0,0 +1,89 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Arc of the key hash ring {@code (start, end]} in the signed long order, it wraps around
+ * if {@code start >= end}, so {@code start == end} is the whole ring.
+ */
+public class HashRange {
+    private static final double RING_SIZE = 0x1.0p64;
+
+    private final long start;
+    private final long end;
+
+    public HashRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return exclusive start
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return inclusive end
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean contains(long hash) {
+        if (start < end) {
+            return hash > start && hash <= end;
+        }
+        return hash > start || hash <= end;
+    }
+
+    /**
+     * @return share of the hash ring covered by the range
+     */
+    public double getFraction() {
+        if (start == end) {
+            return 1.0;
+        }
+        long width = end - start;
+        return ((width >>> 1) * 2.0 + (width & 1)) / RING_SIZE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HashRange that = (HashRange) o;
+
+        return this.start == that.start && this.end == that.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(start) + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + start + ", " + end + "]";
+    }
+}
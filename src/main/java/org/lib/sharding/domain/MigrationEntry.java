@@ -0,0 +1,65 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A key with its value which is moved to another node.
+ */
+public class MigrationEntry {
+    private final Object key;
+    private final Object value;
+    private final int size;
+
+    /**
+     * @param size bytes the entry takes on the wire, it's counted against the migration bandwidth
+     */
+    public MigrationEntry(@NotNull Object key, @Nullable Object value, int size) {
+        this.key = key;
+        this.value = value;
+        this.size = size;
+    }
+
+    @NotNull
+    public Object getKey() {
+        return key;
+    }
+
+    @Nullable
+    public Object getValue() {
+        return value;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("key", key)
+                .add("size", size)
+                .toString();
+    }
+}
@@ -0,0 +1,102 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+import static org.lib.sharding.util.GuavaCollectors.toImmutableList;
+
+/**
+ * Which keys have changed their owner between two routing tables, so a rebalancing
+ * touches only them instead of rescanning all data.
+ */
+public class OwnershipChange {
+    private final RoutingTable previous;
+    private final RoutingTable current;
+    private final ImmutableList<OwnershipTransfer> transfers;
+
+    public OwnershipChange(@NotNull RoutingTable previous, @NotNull RoutingTable current, @NotNull List<OwnershipTransfer> transfers) {
+        this.previous = previous;
+        this.current = current;
+        this.transfers = ImmutableList.copyOf(transfers);
+    }
+
+    @NotNull
+    public RoutingTable getPrevious() {
+        return previous;
+    }
+
+    @NotNull
+    public RoutingTable getCurrent() {
+        return current;
+    }
+
+    @NotNull
+    public ImmutableList<OwnershipTransfer> getTransfers() {
+        return transfers;
+    }
+
+    /**
+     * @return what the given node has to hand over
+     */
+    @NotNull
+    public ImmutableList<OwnershipTransfer> getTransfersFrom(@NotNull ClusterNode node) {
+        return transfers.stream()
+                .filter(transfer -> transfer.getFrom().equals(node))
+                .collect(toImmutableList());
+    }
+
+    /**
+     * @return what the given node has to receive
+     */
+    @NotNull
+    public ImmutableList<OwnershipTransfer> getTransfersTo(@NotNull ClusterNode node) {
+        return transfers.stream()
+                .filter(transfer -> transfer.getTo().equals(node))
+                .collect(toImmutableList());
+    }
+
+    /**
+     * @return share of all keys which have changed their owner
+     */
+    public double getMovedFraction() {
+        return transfers.stream()
+                .mapToDouble(OwnershipTransfer::getFraction)
+                .sum();
+    }
+
+    public boolean isEmpty() {
+        return transfers.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("fromVersion", previous.getVersion())
+                .add("toVersion", current.getVersion())
+                .add("transfers", transfers)
+                .toString();
+    }
+}
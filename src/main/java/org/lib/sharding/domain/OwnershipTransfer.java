@@ -0,0 +1,94 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Keys which have moved from one node to another one.
+ */
+public class OwnershipTransfer {
+    private final ClusterNode from;
+    private final ClusterNode to;
+    private final double fraction;
+    private final ImmutableList<HashRange> ranges;
+
+    public OwnershipTransfer(@NotNull ClusterNode from, @NotNull ClusterNode to, double fraction, @Nullable List<HashRange> ranges) {
+        this.from = from;
+        this.to = to;
+        this.fraction = fraction;
+        this.ranges = ranges == null ? null : ImmutableList.copyOf(ranges);
+    }
+
+    @NotNull
+    public ClusterNode getFrom() {
+        return from;
+    }
+
+    @NotNull
+    public ClusterNode getTo() {
+        return to;
+    }
+
+    /**
+     * @return share of all keys which have moved, exact if the ranges are known, expected otherwise
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    /**
+     * @return hash ranges of the moved keys, or null if the routing strategy can't express
+     * them as ranges: the keys are spread over the whole ring then and a key has moved if
+     * it's routed to the {@link #getTo() new owner} now
+     */
+    @Nullable
+    public ImmutableList<HashRange> getRanges() {
+        return ranges;
+    }
+
+    public boolean contains(long hash) {
+        if (ranges == null) {
+            return true;
+        }
+        for (HashRange range : ranges) {
+            if (range.contains(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("from", from.getAddress())
+                .add("to", to.getAddress())
+                .add("fraction", fraction)
+                .add("ranges", ranges == null ? null : ranges.size())
+                .toString();
+    }
+}
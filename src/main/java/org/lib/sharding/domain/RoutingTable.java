@@ -0,0 +1,159 @@
+package org.lib.sharding.domain;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.util.Bits;
+import org.jgroups.util.Streamable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Serializable;
+import java.util.List;
+
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+/**
+ * Immutable snapshot of the nodes list. Every change of the list produces
+ * a new table with a greater version, so a reader never needs a lock or a copy.
+ * <p>
+ * The version counts the changes within an epoch, the incarnation of the cluster: a table of a later
+ * epoch is newer whatever its version is (see {@link RoutingTableStamp}).
+ * <p>
+ * Node weights are read once when the table is created.
+ */
+public class RoutingTable implements Streamable, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final RoutingTable EMPTY = new RoutingTable(0, ImmutableList.of());
+
+    private long epoch;
+    private long version;
+    private ImmutableList<ClusterNode> nodes;
+    private double[] weights;
+    private RoutingTableStamp stamp;
+
+    /**
+     * Used by the JGroups marshalling only.
+     */
+    public RoutingTable() {
+        this(0, ImmutableList.of());
+    }
+
+    public RoutingTable(long version, @NotNull List<ClusterNode> nodes) {
+        this(0, version, nodes);
+    }
+
+    public RoutingTable(long epoch, long version, @NotNull List<ClusterNode> nodes) {
+        init(epoch, version, nodes);
+    }
+
+    private void init(long epoch, long version, List<ClusterNode> nodes) {
+        this.epoch = epoch;
+        this.version = version;
+        this.nodes = ImmutableList.copyOf(nodes);
+
+        weights = new double[this.nodes.size()];
+        long fingerprint = this.nodes.size();
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = this.nodes.get(i).getWeight();
+            fingerprint = fmix64(fingerprint * 31 + this.nodes.get(i).getAddress().hashCode());
+        }
+        stamp = new RoutingTableStamp(epoch, version, fingerprint);
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the epoch, the version and the fingerprint of the nodes order
+     */
+    @NotNull
+    public RoutingTableStamp getStamp() {
+        return stamp;
+    }
+
+    public boolean isNewerThan(@NotNull RoutingTable other) {
+        return stamp.isNewerThan(other.stamp);
+    }
+
+    @NotNull
+    public ImmutableList<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws Exception {
+        Bits.writeLong(epoch, out);
+        Bits.writeLong(version, out);
+        ClusterNode.writeNodes(nodes, out);
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws Exception {
+        init(Bits.readLong(in), Bits.readLong(in), ClusterNode.readNodes(in));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RoutingTable that = (RoutingTable) o;
+
+        return this.epoch == that.epoch
+                && this.version == that.version
+                && Objects.equal(this.nodes, that.nodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(epoch, version, nodes);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("epoch", epoch)
+                .add("version", version)
+                .add("nodes", nodes)
+                .toString();
+    }
+}
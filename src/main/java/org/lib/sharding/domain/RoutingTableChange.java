@@ -0,0 +1,124 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Result of a nodes list update: both tables, the delta which turns one into the other
+ * and the positions of the changed nodes.
+ * <p>
+ * A node which has kept its position isn't mentioned, so every other bucket keeps its node.
+ */
+public class RoutingTableChange {
+    private final RoutingTable previous;
+    private final RoutingTable current;
+    private final RoutingTableDelta delta;
+    private final int[] addedIndexes;
+    private final int[] removedIndexes;
+    private final int[] movedFromIndexes;
+    private final int[] movedToIndexes;
+
+    public RoutingTableChange(
+            @NotNull RoutingTable previous,
+            @NotNull RoutingTable current,
+            @NotNull RoutingTableDelta delta,
+            @NotNull int[] addedIndexes,
+            @NotNull int[] removedIndexes,
+            @NotNull int[] movedFromIndexes,
+            @NotNull int[] movedToIndexes
+    ) {
+        this.previous = previous;
+        this.current = current;
+        this.delta = delta;
+        this.addedIndexes = addedIndexes;
+        this.removedIndexes = removedIndexes;
+        this.movedFromIndexes = movedFromIndexes;
+        this.movedToIndexes = movedToIndexes;
+    }
+
+    @NotNull
+    public RoutingTable getPrevious() {
+        return previous;
+    }
+
+    @NotNull
+    public RoutingTable getCurrent() {
+        return current;
+    }
+
+    @NotNull
+    public RoutingTableDelta getDelta() {
+        return delta;
+    }
+
+    /**
+     * @return indexes of the added nodes in the current table
+     */
+    @NotNull
+    public int[] getAddedIndexes() {
+        return addedIndexes.clone();
+    }
+
+    /**
+     * @return indexes of the removed nodes in the previous table
+     */
+    @NotNull
+    public int[] getRemovedIndexes() {
+        return removedIndexes.clone();
+    }
+
+    /**
+     * @return indexes in the previous table of the nodes which have changed their position,
+     * in the same order as {@link #getMovedToIndexes()}
+     */
+    @NotNull
+    public int[] getMovedFromIndexes() {
+        return movedFromIndexes.clone();
+    }
+
+    /**
+     * @return new indexes in the current table of the nodes which have changed their position
+     */
+    @NotNull
+    public int[] getMovedToIndexes() {
+        return movedToIndexes.clone();
+    }
+
+    public boolean isEmpty() {
+        return addedIndexes.length == 0 && removedIndexes.length == 0 && movedFromIndexes.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("fromVersion", previous.getVersion())
+                .add("toVersion", current.getVersion())
+                .add("added", Arrays.toString(addedIndexes))
+                .add("removed", Arrays.toString(removedIndexes))
+                .add("movedFrom", Arrays.toString(movedFromIndexes))
+                .add("movedTo", Arrays.toString(movedToIndexes))
+                .toString();
+    }
+}
@@ -0,0 +1,168 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.util.Bits;
+import org.jgroups.util.SizeStreamable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.List;
+
+/**
+ * Change of the routing table from one version to the next one.
+ * <p>
+ * The delta carries the stamp of its base table and is applied only to that very table: a node which has
+ * missed a change, or has a table of the same version changed in another partition, refuses it.
+ * <p>
+ * Added nodes are appended in the given order, then removed nodes are replaced by the last
+ * node of the list one by one, so every node which applies the delta gets the same nodes order.
+ * <p>
+ * Deltas are sent in lists, so the java serialization is delegated to the binary form too.
+ */
+public class RoutingTableDelta implements SizeStreamable, Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private RoutingTableStamp base;
+    private long toVersion;
+    private ImmutableList<ClusterNode> added;
+    private ImmutableList<ClusterNode> removed;
+
+    /**
+     * Used by the marshalling only.
+     */
+    public RoutingTableDelta() {
+        this(RoutingTable.EMPTY.getStamp(), 0, ImmutableList.of(), ImmutableList.of());
+    }
+
+    /**
+     * The change of the given table to the next version.
+     */
+    public RoutingTableDelta(@NotNull RoutingTable base, @NotNull List<ClusterNode> added, @NotNull List<ClusterNode> removed) {
+        this(base.getStamp(), base.getVersion() + 1, added, removed);
+    }
+
+    public RoutingTableDelta(@NotNull RoutingTableStamp base, long toVersion, @NotNull List<ClusterNode> added, @NotNull List<ClusterNode> removed) {
+        this.base = base;
+        this.toVersion = toVersion;
+        this.added = ImmutableList.copyOf(added);
+        this.removed = ImmutableList.copyOf(removed);
+    }
+
+    @NotNull
+    public RoutingTableStamp getBase() {
+        return base;
+    }
+
+    public long getEpoch() {
+        return base.getEpoch();
+    }
+
+    public long getFromVersion() {
+        return base.getVersion();
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    @NotNull
+    public ImmutableList<ClusterNode> getAdded() {
+        return added;
+    }
+
+    @NotNull
+    public ImmutableList<ClusterNode> getRemoved() {
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * @return true if the delta is a change of the given table
+     */
+    public boolean isBasedOn(@NotNull RoutingTable table) {
+        return base.equals(table.getStamp());
+    }
+
+    @Override
+    public int size() {
+        return base.size() + Bits.size(toVersion) + ClusterNode.size(added) + ClusterNode.size(removed);
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws Exception {
+        base.writeTo(out);
+        Bits.writeLong(toVersion, out);
+        ClusterNode.writeNodes(added, out);
+        ClusterNode.writeNodes(removed, out);
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws Exception {
+        base = new RoutingTableStamp();
+        base.readFrom(in);
+        toVersion = Bits.readLong(in);
+        added = ImmutableList.copyOf(ClusterNode.readNodes(in));
+        removed = ImmutableList.copyOf(ClusterNode.readNodes(in));
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        try {
+            readFrom(in);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("base", base)
+                .add("toVersion", toVersion)
+                .add("added", added)
+                .add("removed", removed)
+                .toString();
+    }
+}
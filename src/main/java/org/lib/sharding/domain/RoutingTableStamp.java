@@ -0,0 +1,119 @@
+package org.lib.sharding.domain;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import org.jgroups.Global;
+import org.jgroups.util.Bits;
+import org.jgroups.util.SizeStreamable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Serializable;
+
+/**
+ * Identity of a routing table without its nodes: the epoch, the version and the fingerprint of the nodes order.
+ * <p>
+ * The epoch is the incarnation of the cluster, it's changed when the cluster is formed and when partitions
+ * merge, and takes precedence over the version. Two tables of the same epoch and version are the same
+ * table only if their fingerprints are equal too, so a table which has been changed in another partition
+ * isn't taken for this one. The fingerprint is computed of the address hash codes, which are the same on every node.
+ */
+public class RoutingTableStamp implements SizeStreamable, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private long epoch;
+    private long version;
+    private long fingerprint;
+
+    /**
+     * Used by the marshalling only.
+     */
+    public RoutingTableStamp() {
+    }
+
+    public RoutingTableStamp(long epoch, long version, long fingerprint) {
+        this.epoch = epoch;
+        this.version = version;
+        this.fingerprint = fingerprint;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return true if this table is of a later epoch, or of the same epoch and a greater version
+     */
+    public boolean isNewerThan(RoutingTableStamp other) {
+        return epoch != other.epoch ? epoch > other.epoch : version > other.version;
+    }
+
+    @Override
+    public int size() {
+        return Bits.size(epoch) + Bits.size(version) + Global.LONG_SIZE;
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws Exception {
+        Bits.writeLong(epoch, out);
+        Bits.writeLong(version, out);
+        out.writeLong(fingerprint);
+    }
+
+    @Override
+    public void readFrom(DataInput in) throws Exception {
+        epoch = Bits.readLong(in);
+        version = Bits.readLong(in);
+        fingerprint = in.readLong();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RoutingTableStamp that = (RoutingTableStamp) o;
+
+        return epoch == that.epoch && version == that.version && fingerprint == that.fingerprint;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(epoch * 31 + version) * 31 + Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("epoch", epoch)
+                .add("version", version)
+                .add("fingerprint", Long.toHexString(fingerprint))
+                .toString();
+    }
+}
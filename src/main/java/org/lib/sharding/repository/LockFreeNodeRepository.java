@@ -0,0 +1,237 @@
+package org.lib.sharding.repository;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.Address;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.domain.RoutingTableDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the table together with an address to index map in one immutable state, a writer
+ * builds the next state and publishes it with a single CAS, so neither readers nor writers block.
+ * <p>
+ * Nodes are unique by address: adding a known node does nothing.
+ * <p>
+ * Listeners get every table in the version order without blocking the writers: every state links the one
+ * it has replaced, and the writer which finds no notification running delivers all the tables published
+ * since the last delivered one, the others return at once. So a listener may be called by the thread
+ * of another writer, and after the write has returned.
+ */
+@Singleton
+public class LockFreeNodeRepository implements NodeRepository {
+    private static final Logger log = LoggerFactory.getLogger(LockFreeNodeRepository.class);
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.EMPTY);
+
+    private final RoutingTableListeners listeners = new RoutingTableListeners();
+
+    private final AtomicBoolean notifying = new AtomicBoolean();
+    private volatile State notified = State.EMPTY;
+
+    @NotNull
+    @Override
+    public RoutingTable getRoutingTable() {
+        return state.get().table;
+    }
+
+    @NotNull
+    @Override
+    public List<ClusterNode> getNodes() {
+        return state.get().table.getNodes();
+    }
+
+    @NotNull
+    @Override
+    public RoutingTableChange sync(@NotNull Set<ClusterNode> actual, @NotNull ClusterNode self) {
+        while (true) {
+            State current = state.get();
+            RoutingTableDelta delta = RoutingTableChanges.diff(current.table, current.indexes, actual);
+            if (delta.isEmpty()) {
+                return RoutingTableChanges.unchanged(current.table);
+            }
+            State next = current.apply(delta);
+            if (state.compareAndSet(current, next)) {
+                notifyListeners();
+                for (ClusterNode node : delta.getAdded()) {
+                    log.info("Adding node to the list with [{}] on node [{}]", node, self);
+                }
+                for (ClusterNode node : delta.getRemoved()) {
+                    log.info("Removing node from the list [{}] on node [{}]", node, self);
+                }
+                return next.change;
+            }
+        }
+    }
+
+    @Override
+    public void add(@NotNull ClusterNode node) {
+        update(current -> current.indexes.containsKey(node.getAddress())
+                ? current
+                : current.apply(delta(current, Collections.singletonList(node), Collections.emptyList())));
+    }
+
+    @Override
+    public void remove(@NotNull ClusterNode node) {
+        update(current -> current.indexes.containsKey(node.getAddress())
+                ? current.apply(delta(current, Collections.emptyList(), Collections.singletonList(node)))
+                : current);
+    }
+
+    @Override
+    public int size() {
+        return state.get().table.size();
+    }
+
+    @Override
+    public void setNodes(@NotNull List<ClusterNode> nodes) {
+        update(current -> new State(new RoutingTable(current.table.getEpoch(), current.table.getVersion() + 1, nodes)));
+    }
+
+    @Override
+    public boolean setRoutingTable(@NotNull RoutingTable table) {
+        State next = new State(table);
+        while (true) {
+            State current = state.get();
+            if (!table.isNewerThan(current.table)) {
+                return false;
+            }
+            next.previous = current;
+            if (state.compareAndSet(current, next)) {
+                notifyListeners();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean apply(@NotNull RoutingTableDelta delta) {
+        while (true) {
+            State current = state.get();
+            if (!delta.isBasedOn(current.table)) {
+                return false;
+            }
+            State next = current.apply(delta);
+            if (state.compareAndSet(current, next)) {
+                notifyListeners();
+                return true;
+            }
+        }
+    }
+
+    private void update(UnaryOperator<State> function) {
+        while (true) {
+            State current = state.get();
+            State next = function.apply(current);
+            if (next == current) {
+                return;
+            }
+            next.previous = current;
+            if (state.compareAndSet(current, next)) {
+                notifyListeners();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Delivers the states published since the last delivered one, oldest first. A writer which has
+     * published while the notification was finishing finds its state undelivered and takes over.
+     */
+    private void notifyListeners() {
+        while (notified != state.get() && notifying.compareAndSet(false, true)) {
+            try {
+                State latest = state.get();
+                Deque<State> pending = new ArrayDeque<>();
+                for (State current = latest; current != notified; current = current.previous) {
+                    pending.push(current);
+                }
+                for (State current : pending) {
+                    listeners.fire(current.previous.table, current.table);
+                }
+                for (State current : pending) {
+                    current.previous = null;
+                }
+                notified = latest;
+            } finally {
+                notifying.set(false);
+            }
+        }
+    }
+
+    @Override
+    public void addListener(@NotNull RoutingTableListener listener) {
+        listeners.add(listener);
+    }
+
+    private static RoutingTableDelta delta(State current, List<ClusterNode> added, List<ClusterNode> removed) {
+        return new RoutingTableDelta(current.table, added, removed);
+    }
+
+    private static class State {
+        private static final State EMPTY = new State(RoutingTable.EMPTY);
+
+        private final RoutingTable table;
+        private final Map<Address, Integer> indexes;
+        /**
+         * The change which has produced this state, null if the table has been set as a whole.
+         */
+        private final RoutingTableChange change;
+        /**
+         * The state this one has replaced, until the listeners have got this one.
+         */
+        private volatile State previous;
+
+        private State(RoutingTable table) {
+            this(table, RoutingTableChanges.indexes(table.getNodes()), null);
+        }
+
+        private State(RoutingTable table, Map<Address, Integer> indexes, RoutingTableChange change) {
+            this.table = table;
+            this.indexes = indexes;
+            this.change = change;
+        }
+
+        private State apply(RoutingTableDelta delta) {
+            Map<Address, Integer> indexes = new HashMap<>(this.indexes);
+            RoutingTableChange change = RoutingTableChanges.apply(table, indexes, delta);
+            State next = new State(change.getCurrent(), indexes, change);
+            next.previous = this;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.lib.sharding.repository;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.Address;
+import org.lib.sharding.domain.ClusterNode;
+
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Demand of the shards: requests per second the routers send to the keys placed on every node,
+ * whichever node has served them. Every router counts its own requests, members send their rates
+ * to each other and the demand of a shard is the sum of them.
+ * <p>
+ * Demand changes far more often than the nodes list, so it's kept apart from the routing table
+ * and doesn't change its version.
+ */
+@Singleton
+public class NodeLoads {
+    private final ConcurrentMap<Address, LongAdder> routed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Address, Map<Address, Double>> reports = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Map<Address, Double> demand = ImmutableMap.of();
+    private long lastReport = System.nanoTime();
+
+    /**
+     * @return counter of the requests this router sends to the keys placed on the node
+     */
+    @NotNull
+    public LongAdder getRoutedCounter(@NotNull Address address) {
+        LongAdder counter = routed.get(address);
+        if (counter == null) {
+            counter = routed.computeIfAbsent(address, key -> new LongAdder());
+        }
+        return counter;
+    }
+
+    /**
+     * Turns the requests counted since the last call into rates, which become the demand reported
+     * by the given router.
+     *
+     * @return requests per second by the node the keys are placed on
+     */
+    @NotNull
+    public synchronized Map<Address, Double> report(@NotNull Address reporter) {
+        long now = System.nanoTime();
+        double seconds = (now - lastReport) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastReport = now;
+
+        Map<Address, Double> rates = new HashMap<>();
+        for (Map.Entry<Address, LongAdder> entry : routed.entrySet()) {
+            long requests = entry.getValue().sumThenReset();
+            rates.put(entry.getKey(), seconds > 0 ? requests / seconds : 0);
+        }
+        update(reporter, rates);
+        return rates;
+    }
+
+    /**
+     * Replaces the demand reported by the router.
+     *
+     * @param rates requests per second by the node the keys are placed on
+     */
+    public void update(@NotNull Address reporter, @NotNull Map<Address, Double> rates) {
+        reports.put(reporter, ImmutableMap.copyOf(rates));
+        sum();
+    }
+
+    /**
+     * @return {@link Double#NaN} if no router has reported the demand of the node
+     */
+    public double getDemand(@NotNull Address address) {
+        Double rate = demand.get(address);
+        return rate != null ? rate : Double.NaN;
+    }
+
+    /**
+     * Forgets the demand of the nodes which have left and the reports they have sent.
+     */
+    public void retain(@NotNull Collection<ClusterNode> nodes) {
+        Set<Address> addresses = nodes.stream().map(ClusterNode::getAddress).collect(Collectors.toSet());
+        routed.keySet().retainAll(addresses);
+        if (reports.keySet().retainAll(addresses) || demand.keySet().stream().anyMatch(address -> !addresses.contains(address))) {
+            reports.replaceAll((reporter, rates) -> ImmutableMap.copyOf(Maps.filterKeys(rates, addresses::contains)));
+            sum();
+        }
+    }
+
+    /**
+     * @return a number which changes with every demand change
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private synchronized void sum() {
+        Map<Address, Double> result = new HashMap<>();
+        for (Map<Address, Double> rates : reports.values()) {
+            rates.forEach((address, rate) -> result.merge(address, rate, Double::sum));
+        }
+        demand = ImmutableMap.copyOf(result);
+        version.incrementAndGet();
+    }
+}
@@ -22,6 +22,9 @@ package org.lib.sharding.repository;
 import com.google.inject.ImplementedBy;
 import org.jetbrains.annotations.NotNull;
 import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.domain.RoutingTableDelta;
 
 import java.util.List;
 import java.util.Set;
@@ -29,10 +32,21 @@ import java.util.Set;
 @ImplementedBy(SimpleNodeRepository.class)
 public interface NodeRepository {
 
+    /**
+     * The current snapshot, must be cheap enough to be called on every routing request.
+     */
+    @NotNull
+    RoutingTable getRoutingTable();
+
     @NotNull
     List<ClusterNode> getNodes();
 
-    void sync(@NotNull Set<ClusterNode> actual, @NotNull ClusterNode self);
+    /**
+     * @return the applied change, its delta reproduces the new table on a node which has the previous one;
+     * an empty change if the table already has the actual nodes, no new version is published then
+     */
+    @NotNull
+    RoutingTableChange sync(@NotNull Set<ClusterNode> actual, @NotNull ClusterNode self);
 
     void add(@NotNull ClusterNode node);
 
@@ -41,4 +55,22 @@ public interface NodeRepository {
     int size();
 
     void setNodes(@NotNull List<ClusterNode> nodes);
+
+    /**
+     * Publishes a table received from another node as is.
+     *
+     * @return false if the given table isn't newer than the current one, it's dropped then;
+     * a table of a later epoch is newer whatever its version is
+     */
+    boolean setRoutingTable(@NotNull RoutingTable table);
+
+    /**
+     * @return false if the delta isn't based on the current table: another epoch, version or nodes order
+     */
+    boolean apply(@NotNull RoutingTableDelta delta);
+
+    /**
+     * The listener gets every table published after it's added.
+     */
+    void addListener(@NotNull RoutingTableListener listener);
 }
@@ -0,0 +1,167 @@
+package org.lib.sharding.repository;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jgroups.Address;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.domain.RoutingTableDelta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Linear time diffing and applying of the nodes list changes over an address to index map.
+ * <p>
+ * Added nodes are appended, then the last node is moved in place of every removed one,
+ * so only the buckets of the removed and of the last nodes change their owner.
+ */
+class RoutingTableChanges {
+    private RoutingTableChanges() {
+    }
+
+    static Map<Address, Integer> indexes(List<ClusterNode> nodes) {
+        Map<Address, Integer> indexes = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++) {
+            indexes.putIfAbsent(nodes.get(i).getAddress(), i);
+        }
+        return indexes;
+    }
+
+    /**
+     * @return nodes of the actual set which aren't in the table, then nodes of the table
+     * which aren't in the actual set, both in their iteration order
+     */
+    static RoutingTableDelta diff(RoutingTable table, Map<Address, Integer> indexes, Set<ClusterNode> actual) {
+        List<ClusterNode> added = new ArrayList<>();
+        for (ClusterNode node : actual) {
+            if (!indexes.containsKey(node.getAddress())) {
+                added.add(node);
+            }
+        }
+
+        List<ClusterNode> removed = new ArrayList<>();
+        for (ClusterNode node : table.getNodes()) {
+            if (!actual.contains(node)) {
+                removed.add(node);
+            }
+        }
+
+        return new RoutingTableDelta(table, added, removed);
+    }
+
+    /**
+     * @return the change of a table which is already in sync, it keeps the version
+     */
+    static RoutingTableChange unchanged(RoutingTable table) {
+        return new RoutingTableChange(
+                table,
+                table,
+                new RoutingTableDelta(table.getStamp(), table.getVersion(), Collections.emptyList(), Collections.emptyList()),
+                new int[0],
+                new int[0],
+                new int[0],
+                new int[0]
+        );
+    }
+
+    /**
+     * @param indexes index of every node of the table, it's updated to match the new table
+     */
+    static RoutingTableChange apply(RoutingTable table, Map<Address, Integer> indexes, RoutingTableDelta delta) {
+        List<ClusterNode> previous = table.getNodes();
+        ClusterNode[] nodes = previous.toArray(new ClusterNode[previous.size() + delta.getAdded().size()]);
+
+        // index in the previous table of the node at every position, -1 for an added node
+        int[] origins = new int[nodes.length];
+        for (int i = 0; i < previous.size(); i++) {
+            origins[i] = i;
+        }
+
+        int size = previous.size();
+        for (ClusterNode node : delta.getAdded()) {
+            if (indexes.putIfAbsent(node.getAddress(), size) == null) {
+                origins[size] = -1;
+                nodes[size++] = node;
+            }
+        }
+
+        int[] removedIndexes = new int[delta.getRemoved().size()];
+        int removedCount = 0;
+        for (ClusterNode node : delta.getRemoved()) {
+            Integer index = indexes.remove(node.getAddress());
+            if (index == null) {
+                continue;
+            }
+            if (origins[index] >= 0) {
+                removedIndexes[removedCount++] = origins[index];
+            }
+
+            ClusterNode last = nodes[--size];
+            if (index < size) {
+                nodes[index] = last;
+                origins[index] = origins[size];
+                indexes.put(last.getAddress(), index);
+            }
+            nodes[size] = null;
+        }
+
+        int addedCount = 0;
+        int movedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (origins[i] < 0) {
+                addedCount++;
+            } else if (origins[i] != i) {
+                movedCount++;
+            }
+        }
+
+        int[] addedIndexes = new int[addedCount];
+        int[] movedFromIndexes = new int[movedCount];
+        int[] movedToIndexes = new int[movedCount];
+        addedCount = 0;
+        movedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (origins[i] < 0) {
+                addedIndexes[addedCount++] = i;
+            } else if (origins[i] != i) {
+                movedFromIndexes[movedCount] = origins[i];
+                movedToIndexes[movedCount++] = i;
+            }
+        }
+
+        return new RoutingTableChange(
+                table,
+                new RoutingTable(table.getEpoch(), delta.getToVersion(), Arrays.asList(nodes).subList(0, size)),
+                delta,
+                addedIndexes,
+                Arrays.copyOf(removedIndexes, removedCount),
+                movedFromIndexes,
+                movedToIndexes
+        );
+    }
+}
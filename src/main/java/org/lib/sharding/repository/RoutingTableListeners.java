@@ -0,0 +1,52 @@
+package org.lib.sharding.repository;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listeners of a repository, a failing listener doesn't affect the others nor the writer.
+ */
+class RoutingTableListeners {
+    private static final Logger log = LoggerFactory.getLogger(RoutingTableListeners.class);
+
+    private final List<RoutingTableListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(@NotNull RoutingTableListener listener) {
+        listeners.add(listener);
+    }
+
+    void fire(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        for (RoutingTableListener listener : listeners) {
+            try {
+                listener.tableChanged(previous, current);
+            } catch (Exception e) {
+                log.error("Routing table listener " + listener + " has failed on version " + current.getVersion(), e);
+            }
+        }
+    }
+}
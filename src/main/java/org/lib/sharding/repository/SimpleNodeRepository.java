@@ -19,81 +19,154 @@ package org.lib.sharding.repository;
  * limitations under the License.
  */
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 import org.jetbrains.annotations.NotNull;
+import org.jgroups.Address;
 import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.domain.RoutingTableDelta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Singleton;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Copy-on-write repository: writers are serialized and publish a new {@link RoutingTable},
+ * readers just read the volatile reference. Listeners are called under the writers lock,
+ * so they get the tables in the version order.
+ */
 @Singleton
 public class SimpleNodeRepository implements NodeRepository {
     private static final Logger log = LoggerFactory.getLogger(SimpleNodeRepository.class);
 
-    private final List<ClusterNode> nodes = new ArrayList<>();
+    private final Object lock = new Object();
+
+    private final RoutingTableListeners listeners = new RoutingTableListeners();
+
+    private volatile RoutingTable table = RoutingTable.EMPTY;
 
     @NotNull
     @Override
-    public List<ClusterNode> getNodes() {
-        synchronized (nodes) {
-            return ImmutableList.copyOf(nodes);
-        }
+    public RoutingTable getRoutingTable() {
+        return table;
     }
 
+    @NotNull
     @Override
-    public void sync(@NotNull Set<ClusterNode> actual, @NotNull ClusterNode self) {
-        synchronized (nodes) {
-            Set<ClusterNode> uniqueNodes = ImmutableSet.copyOf(nodes);
+    public List<ClusterNode> getNodes() {
+        return table.getNodes();
+    }
 
-            Sets.SetView<ClusterNode> removedNodes = Sets.difference(uniqueNodes, actual);
-            Sets.SetView<ClusterNode> addedNodes = Sets.difference(actual, uniqueNodes);
+    @NotNull
+    @Override
+    public RoutingTableChange sync(@NotNull Set<ClusterNode> actual, @NotNull ClusterNode self) {
+        synchronized (lock) {
+            Map<Address, Integer> indexes = RoutingTableChanges.indexes(table.getNodes());
+            RoutingTableDelta delta = RoutingTableChanges.diff(table, indexes, actual);
+            if (delta.isEmpty()) {
+                return RoutingTableChanges.unchanged(table);
+            }
 
-            for (ClusterNode added : addedNodes) {
+            for (ClusterNode added : delta.getAdded()) {
                 log.info("Adding node to the list with [{}] on node [{}]", added, self);
-                add(added);
             }
 
-            for (ClusterNode removed : removedNodes) {
+            for (ClusterNode removed : delta.getRemoved()) {
                 log.info("Removing node from the list [{}] on node [{}]", removed, self);
-                remove(removed);
             }
+
+            RoutingTableChange change = RoutingTableChanges.apply(table, indexes, delta);
+            publish(change.getCurrent());
+            return change;
         }
     }
 
     @Override
     public void add(@NotNull ClusterNode node) {
-        synchronized (nodes) {
+        synchronized (lock) {
+            List<ClusterNode> nodes = new ArrayList<>(table.getNodes());
             nodes.add(node);
+            publish(nodes);
         }
     }
 
     @Override
     public void remove(@NotNull ClusterNode node) {
-        synchronized (nodes) {
-            int removedIndex = nodes.indexOf(node);
-            nodes.set(removedIndex, nodes.get(nodes.size() - 1));
-            nodes.remove(nodes.get(nodes.size() - 1));
+        synchronized (lock) {
+            List<ClusterNode> nodes = new ArrayList<>(table.getNodes());
+            if (remove(nodes, node)) {
+                publish(nodes);
+            }
         }
     }
 
     @Override
     public int size() {
-        synchronized (nodes) {
-            return nodes.size();
-        }
+        return table.size();
     }
 
     @Override
     public void setNodes(@NotNull List<ClusterNode> nodes) {
-        synchronized (this.nodes) {
-            this.nodes.clear();
-            this.nodes.addAll(nodes);
+        synchronized (lock) {
+            publish(nodes);
+        }
+    }
+
+    @Override
+    public boolean setRoutingTable(@NotNull RoutingTable table) {
+        synchronized (lock) {
+            if (!table.isNewerThan(this.table)) {
+                return false;
+            }
+            publish(table);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean apply(@NotNull RoutingTableDelta delta) {
+        synchronized (lock) {
+            if (!delta.isBasedOn(table)) {
+                return false;
+            }
+            publish(RoutingTableChanges.apply(table, RoutingTableChanges.indexes(table.getNodes()), delta).getCurrent());
+            return true;
+        }
+    }
+
+    @Override
+    public void addListener(@NotNull RoutingTableListener listener) {
+        listeners.add(listener);
+    }
+
+    private void publish(List<ClusterNode> nodes) {
+        publish(new RoutingTable(table.getEpoch(), table.getVersion() + 1, nodes));
+    }
+
+    private void publish(RoutingTable next) {
+        RoutingTable previous = table;
+        table = next;
+        listeners.fire(previous, next);
+    }
+
+    /**
+     * Moves the last node in place of the removed one, so only the keys
+     * of the removed and of the last buckets are remapped.
+     */
+    private static boolean remove(List<ClusterNode> nodes, ClusterNode node) {
+        int removedIndex = nodes.indexOf(node);
+        if (removedIndex < 0) {
+            return false;
+        }
+
+        ClusterNode last = nodes.remove(nodes.size() - 1);
+        if (removedIndex < nodes.size()) {
+            nodes.set(removedIndex, last);
         }
+        return true;
     }
 }
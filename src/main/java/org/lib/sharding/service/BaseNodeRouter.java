@@ -19,42 +19,218 @@ package org.lib.sharding.service;
  * limitations under the License.
  */
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
 import org.lib.sharding.repository.NodeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
-import static com.google.common.hash.Hashing.consistentHash;
-import static com.google.common.hash.Hashing.md5;
+import static com.google.common.base.Preconditions.checkArgument;
 
 abstract class BaseNodeRouter<T> implements NodeRouter<T> {
     private static final Logger log = LoggerFactory.getLogger(BaseNodeRouter.class);
 
+    private static final ThreadLocal<int[]> nodeIndexes = ThreadLocal.withInitial(() -> new int[8]);
+
+    private volatile NodeLocator locator;
+
     abstract protected NodeRepository getNodeRepository();
 
+    abstract protected KeyHasher getKeyHasher();
+
+    abstract protected RoutingStrategy getRoutingStrategy();
+
+    abstract protected RoutingTableTracker getRoutingTableTracker();
+
+    /**
+     * @return null if the hot keys cache is disabled
+     */
+    @Nullable
+    protected RoutingCache getRoutingCache() {
+        return null;
+    }
+
+    /**
+     * @return null if the routing metrics are disabled
+     */
+    @Nullable
+    protected ShardingMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * @return null if the skew analyzer is disabled
+     */
+    @Nullable
+    protected SkewAnalyzer getSkewAnalyzer() {
+        return null;
+    }
+
     @Override
     public ClusterNode getNodeByKey(@NotNull T elt) {
-        List<ClusterNode> nodes = getNodeRepository().getNodes();
-        if (nodes.isEmpty()) {
-            throw new IllegalStateException("Nodes list is empty!");
+        ShardingMetrics metrics = getMetrics();
+        SkewAnalyzer skewAnalyzer = getSkewAnalyzer();
+
+        ClusterNode node;
+        if (metrics == null) {
+            node = route(elt);
+        } else {
+            long start = System.nanoTime();
+            node = route(elt);
+            metrics.routed(node, System.nanoTime() - start);
         }
 
-        int bucket = consistentHash(md5().hashString(elt.toString(), Charset.forName("UTF-8")), nodes.size());
+        if (skewAnalyzer != null) {
+            skewAnalyzer.sample(elt, node);
+        }
+        return node;
+    }
 
-        ClusterNode node = nodes.get(bucket);
+    @Override
+    public CompletableFuture<ClusterNode> getNodeByKeyAsync(@NotNull T key) {
+        return routeAsync(() -> getNodeByKey(key));
+    }
+
+    /**
+     * Routes right away on a stable table, a table emptied meanwhile parks the call too.
+     */
+    protected CompletableFuture<ClusterNode> routeAsync(@NotNull Supplier<ClusterNode> route) {
+        RoutingTableTracker tracker = getRoutingTableTracker();
+        if (tracker.isStable()) {
+            try {
+                return CompletableFuture.completedFuture(route.get());
+            } catch (IllegalStateException e) {
+                log.debug("Routing table has become empty, waiting for the next one", e);
+            }
+        }
+        return tracker.awaitStable().thenApply(table -> route.get());
+    }
+
+    private ClusterNode route(@NotNull T elt) {
+        RoutingCache cache = getRoutingCache();
+        if (cache == null) {
+            return getNodeByHash(getKeyHasher().hashKey(elt));
+        }
+
+        NodeLocator locator = getNodeLocator();
+        long tag = RoutingCache.tag(locator.getRoutingTable());
+
+        ClusterNode node = cache.get(elt, tag);
+        if (node == null) {
+            node = getNode(locator, getKeyHasher().hashKey(elt));
+            cache.put(elt, tag, node);
+        }
+        return node;
+    }
+
+    @Override
+    public List<ClusterNode> getNodesByKey(@NotNull T key, int replicationFactor) {
+        return getNodesByHash(getKeyHasher().hashKey(key), replicationFactor);
+    }
+
+    @Override
+    public int getNodesByKey(@NotNull T key, @NotNull ClusterNode[] result) {
+        return getNodesByHash(getKeyHasher().hashKey(key), result);
+    }
+
+    @Override
+    public Map<ClusterNode, List<T>> getNodesByKeys(@NotNull Iterable<T> keys) {
+        NodeLocator locator = getNodeLocator();
+
+        KeyHasher hasher = getKeyHasher();
+        List<ClusterNode> nodes = locator.getRoutingTable().getNodes();
+
+        List<List<T>> grouped = new ArrayList<>(Collections.<List<T>>nCopies(nodes.size(), null));
+        for (T key : keys) {
+            int bucket = locator.getNodeIndex(hasher.hashKey(key));
+            List<T> group = grouped.get(bucket);
+            if (group == null) {
+                group = new ArrayList<>();
+                grouped.set(bucket, group);
+            }
+            group.add(key);
+        }
+
+        ImmutableMap.Builder<ClusterNode, List<T>> result = ImmutableMap.builder();
+        for (int bucket = 0; bucket < grouped.size(); bucket++) {
+            if (grouped.get(bucket) != null) {
+                result.put(nodes.get(bucket), grouped.get(bucket));
+            }
+        }
+        return result.build();
+    }
+
+    protected ClusterNode getNodeByHash(long hash) {
+        return getNode(getNodeLocator(), hash);
+    }
+
+    protected ClusterNode getNode(@NotNull NodeLocator locator, long hash) {
+        ClusterNode node = locator.getRoutingTable().getNodes().get(locator.getNodeIndex(hash));
         if (null == node) {
-            throw new IllegalStateException("Can't find node for the given key:" + elt.toString());
+            throw new IllegalStateException("Can't find node for the given hash:" + hash);
         }
 
         return node;
     }
 
+    protected List<ClusterNode> getNodesByHash(long hash, int replicationFactor) {
+        checkArgument(replicationFactor > 0, "replication factor must be positive: %s", replicationFactor);
+
+        ClusterNode[] result = new ClusterNode[replicationFactor];
+        int count = getNodesByHash(hash, result);
+        return ImmutableList.copyOf(Arrays.asList(result).subList(0, count));
+    }
+
+    protected int getNodesByHash(long hash, @NotNull ClusterNode[] result) {
+        NodeLocator locator = getNodeLocator();
+
+        int[] indexes = nodeIndexes.get();
+        if (indexes.length < result.length) {
+            indexes = new int[result.length];
+            nodeIndexes.set(indexes);
+        }
+
+        int count = locator.getNodeIndexes(hash, indexes, result.length);
+
+        List<ClusterNode> nodes = locator.getRoutingTable().getNodes();
+        for (int i = 0; i < count; i++) {
+            result[i] = nodes.get(indexes[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the snapshot once, so a whole batch is routed against the same nodes list.
+     * The locator is rebuilt only when the repository publishes a new table.
+     */
+    protected NodeLocator getNodeLocator() {
+        RoutingTable table = getNodeRepository().getRoutingTable();
+        if (table.isEmpty()) {
+            throw new IllegalStateException("Nodes list is empty!");
+        }
+
+        NodeLocator current = locator;
+        if (current == null || current.getRoutingTable() != table) {
+            current = getRoutingStrategy().createLocator(table);
+            locator = current;
+        }
+        return current;
+    }
+
     @Override
     public int getNodesCount() {
         return getNodeRepository().size();
@@ -0,0 +1,264 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeLoads;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+/**
+ * Consistent hashing with bounded loads: a node whose demand exceeds (1 + epsilon) of the average one
+ * scaled by its weight gives the excess share of its keys away, the other keys stay. The key hash decides
+ * which keys go, so a growing excess moves more keys while the moved ones stay away. Keys of the nodes
+ * within the bound never move.
+ * <p>
+ * Every node takes at most the room it has below its bound: the excess of a node is split between the
+ * nodes with the most room, each takes what it can and the next one the rest, so no node is pushed
+ * over its bound by the keys of the others.
+ * <p>
+ * Requests are counted by the placement node of the key, whichever node serves them, so spilling
+ * doesn't change the demand it's based on. Only the single key routes count, a replica lookup isn't
+ * a request of its own. A node starts to spill when its demand exceeds the bound by the hysteresis
+ * share and stops when it falls below the bound; the spill is recomputed only when the demand changes.
+ */
+class BoundedLoadNodeLocator implements NodeLocator {
+    private static final long SPILL_SEED = 0x2545f4914f6cdd1dL;
+
+    private final NodeLocator placement;
+    private final NodeLoads loads;
+    private final double epsilon;
+    private final double hysteresis;
+    private final LongAdder[] routed;
+
+    private volatile Spill spill = new Spill(-1, null, null, null);
+
+    BoundedLoadNodeLocator(@NotNull NodeLocator placement, @NotNull NodeLoads loads, double epsilon, double hysteresis) {
+        this.placement = placement;
+        this.loads = loads;
+        this.epsilon = epsilon;
+        this.hysteresis = hysteresis;
+
+        RoutingTable table = placement.getRoutingTable();
+        routed = new LongAdder[table.size()];
+        for (int i = 0; i < routed.length; i++) {
+            routed[i] = loads.getRoutedCounter(table.getNodes().get(i).getAddress());
+        }
+    }
+
+    @NotNull
+    @Override
+    public RoutingTable getRoutingTable() {
+        return placement.getRoutingTable();
+    }
+
+    @Override
+    public int getNodeIndex(long hash) {
+        int index = placement.getNodeIndex(hash);
+        routed[index].increment();
+        return locate(hash, index);
+    }
+
+    /**
+     * The first index is where {@link #getNodeIndex(long)} routes the key, the others follow the placement
+     * order. The demand isn't counted.
+     */
+    @Override
+    public int getNodeIndexes(long hash, @NotNull int[] result, int limit) {
+        int count = placement.getNodeIndexes(hash, result, limit);
+        if (count == 0) {
+            return 0;
+        }
+
+        int primary = locate(hash, result[0]);
+        int position = count - 1;
+        for (int i = 0; i < count; i++) {
+            if (result[i] == primary) {
+                position = i;
+                break;
+            }
+        }
+        System.arraycopy(result, 0, result, 1, position);
+        result[0] = primary;
+        return count;
+    }
+
+    /**
+     * @return share of the keys every node gives away, null if no node does
+     */
+    double[] getSpillFractions() {
+        return getSpill().fractions;
+    }
+
+    private Spill getSpill() {
+        Spill current = spill;
+        long version = loads.getVersion();
+        if (current.version != version) {
+            current = computeSpill(version, current.fractions);
+            spill = current;
+        }
+        return current;
+    }
+
+    private int locate(long hash, int index) {
+        Spill current = getSpill();
+        if (current.fractions == null) {
+            return index;
+        }
+
+        double unit = getUnit(hash);
+        if (unit >= current.fractions[index]) {
+            return index;
+        }
+
+        double[] limits = current.limits[index];
+        for (int i = 0; i < limits.length; i++) {
+            if (unit < limits[i]) {
+                return current.receivers[index][i];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Nodes with unknown demand never spill, they have the room of their whole bound and don't count in the average.
+     *
+     * @param previous fractions of the previous spill, a spilling node keeps on until it's below the bound
+     */
+    private Spill computeSpill(long version, double[] previous) {
+        RoutingTable table = getRoutingTable();
+
+        double[] demand = new double[table.size()];
+        double totalDemand = 0;
+        double totalWeight = 0;
+        for (int i = 0; i < demand.length; i++) {
+            demand[i] = loads.getDemand(table.getNodes().get(i).getAddress());
+            if (!Double.isNaN(demand[i])) {
+                totalDemand += demand[i];
+                totalWeight += table.getWeight(i);
+            }
+        }
+        if (totalDemand <= 0 || totalWeight <= 0) {
+            return new Spill(version, null, null, null);
+        }
+
+        double average = totalDemand / totalWeight;
+        double[] excess = new double[demand.length];
+        double[] room = new double[demand.length];
+        boolean any = false;
+        for (int i = 0; i < demand.length; i++) {
+            double bound = (1 + epsilon) * average * table.getWeight(i);
+            if (Double.isNaN(demand[i])) {
+                room[i] = bound;
+                continue;
+            }
+
+            boolean spilling = previous != null && previous[i] > 0;
+            if (demand[i] > bound * (spilling ? 1 : 1 + hysteresis)) {
+                excess[i] = demand[i] - bound;
+                any = true;
+            } else {
+                room[i] = Math.max(0, bound - demand[i]);
+            }
+        }
+        if (!any) {
+            return new Spill(version, null, null, null);
+        }
+
+        double[] fractions = new double[demand.length];
+        int[][] receivers = new int[demand.length][];
+        double[][] limits = new double[demand.length][];
+        for (int i = 0; i < demand.length; i++) {
+            if (excess[i] > 0) {
+                fill(i, demand[i], excess[i], room, fractions, receivers, limits);
+            }
+        }
+        return new Spill(version, fractions, receivers, limits);
+    }
+
+    /**
+     * Gives the excess of the node to the nodes with the most room and takes it out of their room. A share
+     * which has found no room stays on the node.
+     */
+    private static void fill(int node, double demand, double excess, double[] room,
+                             double[] fractions, int[][] receivers, double[][] limits) {
+        int[] taken = new int[room.length];
+        double[] shares = new double[room.length];
+        int count = 0;
+        double left = excess;
+        while (left > 0) {
+            int receiver = -1;
+            for (int i = 0; i < room.length; i++) {
+                if (i != node && room[i] > 0 && (receiver < 0 || room[i] > room[receiver])) {
+                    receiver = i;
+                }
+            }
+            if (receiver < 0) {
+                break;
+            }
+
+            double share = Math.min(left, room[receiver]);
+            room[receiver] -= share;
+            left -= share;
+            taken[count] = receiver;
+            shares[count] = share;
+            count++;
+        }
+
+        receivers[node] = Arrays.copyOf(taken, count);
+        limits[node] = new double[count];
+        double limit = 0;
+        for (int i = 0; i < count; i++) {
+            limit += shares[i] / demand;
+            limits[node][i] = limit;
+        }
+        fractions[node] = limit;
+    }
+
+    /**
+     * @return a number from 0 inclusive to 1 exclusive, independent of the placement of the hash
+     */
+    private static double getUnit(long hash) {
+        return (fmix64(hash ^ SPILL_SEED) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The spilled keys of a node are those whose unit is below its fraction, the receiver of a key is
+     * the first one whose limit is above the unit.
+     */
+    private static class Spill {
+        private final long version;
+        private final double[] fractions;
+        private final int[][] receivers;
+        private final double[][] limits;
+
+        private Spill(long version, double[] fractions, int[][] receivers, double[][] limits) {
+            this.version = version;
+            this.fractions = fractions;
+            this.receivers = receivers;
+            this.limits = limits;
+        }
+    }
+}
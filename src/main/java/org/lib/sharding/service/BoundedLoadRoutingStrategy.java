@@ -0,0 +1,75 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.configuration.RouterPropertiesConfiguration;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeLoads;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Ring placement which spills the excess keys of overloaded nodes to the nodes with room below their bound,
+ * see {@code sharding.router.load.epsilon}, {@code sharding.router.load.hysteresis}
+ * and {@code sharding.cluster.load.period}.
+ * <p>
+ * Ownership is the ring one: spilled keys are served elsewhere for a while, they aren't migrated.
+ * A key may move while the routing table stays the same, so the hot keys cache can't be used.
+ */
+@Singleton
+public class BoundedLoadRoutingStrategy implements RoutingStrategy {
+
+    @Inject
+    private RingRoutingStrategy placement;
+
+    @Inject
+    private NodeLoads nodeLoads;
+
+    @Inject
+    private RouterPropertiesConfiguration configuration;
+
+    @NotNull
+    @Override
+    public NodeLocator createLocator(@NotNull RoutingTable table) {
+        return new BoundedLoadNodeLocator(
+                placement.createLocator(table), nodeLoads, configuration.getLoadEpsilon(), configuration.getLoadHysteresis());
+    }
+
+    @NotNull
+    @Override
+    public NodeLocator createPlacementLocator(@NotNull RoutingTable table) {
+        return placement.createLocator(table);
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
+    @NotNull
+    @Override
+    public OwnershipChange getOwnershipChange(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        return placement.getOwnershipChange(previous, current);
+    }
+}
@@ -19,19 +19,270 @@ package org.lib.sharding.service;
  * limitations under the License.
  */
 
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lib.sharding.configuration.RouterPropertiesConfiguration;
+import org.lib.sharding.domain.ClusterNode;
 import org.lib.sharding.repository.NodeRepository;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.google.common.base.Preconditions.checkState;
 
 @Singleton
 public class ClientNodeRouter extends BaseNodeRouter<Long> {
+	private static final int PARALLEL_THRESHOLD = 8192;
 
 	@Inject
 	private NodeRepository nodeRepository;
 
+	@Inject
+	private KeyHasher keyHasher;
+
+	@Inject
+	private RoutingStrategy routingStrategy;
+
+	@Inject
+	private RoutingTableTracker routingTableTracker;
+
+	private RoutingCache routingCache;
+
+	private ShardingMetrics metrics;
+
+	private SkewAnalyzer skewAnalyzer;
+
+	/**
+	 * @throws IllegalStateException if the cache is enabled with a routing strategy which can't be cached
+	 */
+	@Inject
+	void createRoutingCache(RouterPropertiesConfiguration configuration) {
+		if (configuration.getCacheSize() > 0) {
+			checkState(routingStrategy.isCacheable(),
+					"sharding.router.cache.size must be zero with %s", routingStrategy.getClass().getSimpleName());
+			routingCache = new RoutingCache(configuration.getCacheSize(), configuration.getCacheConcurrency());
+		}
+	}
+
+	@Inject
+	void setMetrics(ShardingMetrics metrics, SkewAnalyzer skewAnalyzer) {
+		if (metrics.isRoutingEnabled()) {
+			this.metrics = metrics;
+		}
+		if (skewAnalyzer.isEnabled()) {
+			this.skewAnalyzer = skewAnalyzer;
+		}
+	}
+
+	/**
+	 * Primitive routing path, the key is neither boxed nor converted to a string.
+	 *
+	 * @throws IllegalStateException if there is no nodes
+	 *                               has been found for a given key.
+	 */
+	public ClusterNode getNodeByKey(long key) {
+		ClusterNode node;
+		if (metrics == null) {
+			node = route(key);
+		} else {
+			long start = System.nanoTime();
+			node = route(key);
+			metrics.routed(node, System.nanoTime() - start);
+		}
+
+		if (skewAnalyzer != null) {
+			skewAnalyzer.sample(key, node);
+		}
+		return node;
+	}
+
+	private ClusterNode route(long key) {
+		if (routingCache == null) {
+			return getNodeByHash(keyHasher.hashLong(key));
+		}
+
+		NodeLocator locator = getNodeLocator();
+		long tag = RoutingCache.tag(locator.getRoutingTable());
+
+		ClusterNode node = routingCache.get(key, tag);
+		if (node == null) {
+			node = getNode(locator, keyHasher.hashLong(key));
+			routingCache.put(key, tag, node);
+		}
+		return node;
+	}
+
+	@Override
+	public ClusterNode getNodeByKey(@NotNull Long key) {
+		return getNodeByKey(key.longValue());
+	}
+
+	/**
+	 * Primitive path of {@link #getNodeByKeyAsync(Object)}.
+	 */
+	public CompletableFuture<ClusterNode> getNodeByKeyAsync(long key) {
+		return routeAsync(() -> getNodeByKey(key));
+	}
+
+	@Override
+	public CompletableFuture<ClusterNode> getNodeByKeyAsync(@NotNull Long key) {
+		return getNodeByKeyAsync(key.longValue());
+	}
+
+	/**
+	 * Primitive path of {@link #getNodesByKey(Object, int)}.
+	 */
+	public List<ClusterNode> getNodesByKey(long key, int replicationFactor) {
+		return getNodesByHash(keyHasher.hashLong(key), replicationFactor);
+	}
+
+	/**
+	 * Primitive path of {@link #getNodesByKey(Object, ClusterNode[])}, nothing is allocated.
+	 */
+	public int getNodesByKey(long key, @NotNull ClusterNode[] result) {
+		return getNodesByHash(keyHasher.hashLong(key), result);
+	}
+
+	/**
+	 * Primitive batch routing path, see {@link #getNodesByKeys(long[], ForkJoinPool)}.
+	 */
+	public Map<ClusterNode, long[]> getNodesByKeys(@NotNull long[] keys) {
+		return getNodesByKeys(keys, null);
+	}
+
+	/**
+	 * Groups the keys by their nodes, all keys are routed against the same nodes list.
+	 * Keys of every node keep their relative order.
+	 *
+	 * @param pool if given, the hashing of large batches is split across the pool
+	 * @throws IllegalStateException if there is no nodes
+	 *                               has been found for a given key.
+	 */
+	public Map<ClusterNode, long[]> getNodesByKeys(@NotNull long[] keys, @Nullable ForkJoinPool pool) {
+		NodeLocator locator = getNodeLocator();
+
+		int[] buckets = new int[keys.length];
+		if (pool != null && keys.length > PARALLEL_THRESHOLD) {
+			pool.invoke(new BucketsTask(locator, keys, buckets, 0, keys.length));
+		} else {
+			fillBuckets(locator, keys, buckets, 0, keys.length);
+		}
+
+		List<ClusterNode> nodes = locator.getRoutingTable().getNodes();
+
+		int[] counts = new int[nodes.size()];
+		for (int bucket : buckets) {
+			counts[bucket]++;
+		}
+
+		long[][] grouped = new long[counts.length][];
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			grouped[bucket] = new long[counts[bucket]];
+			counts[bucket] = 0;
+		}
+
+		for (int i = 0; i < keys.length; i++) {
+			int bucket = buckets[i];
+			grouped[bucket][counts[bucket]++] = keys[i];
+		}
+
+		ImmutableMap.Builder<ClusterNode, long[]> result = ImmutableMap.builder();
+		for (int bucket = 0; bucket < grouped.length; bucket++) {
+			if (grouped[bucket].length > 0) {
+				result.put(nodes.get(bucket), grouped[bucket]);
+			}
+		}
+		return result.build();
+	}
+
 	@Override
 	protected NodeRepository getNodeRepository() {
 		return nodeRepository;
 	}
+
+	@Override
+	protected KeyHasher getKeyHasher() {
+		return keyHasher;
+	}
+
+	@Override
+	protected RoutingStrategy getRoutingStrategy() {
+		return routingStrategy;
+	}
+
+	@Override
+	protected RoutingTableTracker getRoutingTableTracker() {
+		return routingTableTracker;
+	}
+
+	/**
+	 * @return null if the routing metrics are disabled, see {@code sharding.metrics.routing}
+	 */
+	@Nullable
+	@Override
+	protected ShardingMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return null if the skew analyzer is disabled, see {@code sharding.metrics.skew.sampleRate}
+	 */
+	@Nullable
+	@Override
+	protected SkewAnalyzer getSkewAnalyzer() {
+		return skewAnalyzer;
+	}
+
+	/**
+	 * @return null if the cache is disabled, see {@code sharding.router.cache.size}
+	 */
+	@Nullable
+	@Override
+	public RoutingCache getRoutingCache() {
+		return routingCache;
+	}
+
+	private void fillBuckets(NodeLocator locator, long[] keys, int[] buckets, int from, int to) {
+		for (int i = from; i < to; i++) {
+			buckets[i] = locator.getNodeIndex(keyHasher.hashLong(keys[i]));
+		}
+	}
+
+	private class BucketsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final NodeLocator locator;
+		private final long[] keys;
+		private final int[] buckets;
+		private final int from;
+		private final int to;
+
+		private BucketsTask(NodeLocator locator, long[] keys, int[] buckets, int from, int to) {
+			this.locator = locator;
+			this.keys = keys;
+			this.buckets = buckets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				fillBuckets(locator, keys, buckets, from, to);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(
+					new BucketsTask(locator, keys, buckets, from, middle),
+					new BucketsTask(locator, keys, buckets, middle, to)
+			);
+		}
+	}
 }
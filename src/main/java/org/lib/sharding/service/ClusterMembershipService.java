@@ -42,4 +42,14 @@ public interface ClusterMembershipService {
     List<ClusterNode> getNodes();
 
     void setNodes(@NotNull Address address, @NotNull List<ClusterNode> nodes);
+
+    /**
+     * @return view changes which have been handled by an update run of another view change
+     */
+    long getCoalescedUpdates();
+
+    /**
+     * @return routing table changes which have been merged into a newer one before their rebalancing started
+     */
+    long getSupersededRebalances();
 }
@@ -19,6 +19,7 @@ package org.lib.sharding.service;
  * limitations under the License.
  */
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jgroups.*;
@@ -27,9 +28,17 @@ import org.jgroups.blocks.RequestOptions;
 import org.jgroups.blocks.ResponseMode;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.locking.LockService;
+import org.jgroups.util.ByteArrayDataInputStream;
+import org.jgroups.util.Rsp;
+import org.jgroups.util.RspList;
 import org.jgroups.util.Util;
 import org.lib.sharding.configuration.ClusterPropertiesConfiguration;
 import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.domain.RoutingTableDelta;
+import org.lib.sharding.domain.RoutingTableStamp;
+import org.lib.sharding.repository.NodeLoads;
 import org.lib.sharding.repository.NodeRepository;
 import org.lib.sharding.util.GuavaCollectors;
 import org.slf4j.Logger;
@@ -44,11 +53,15 @@ import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 
 import static org.jgroups.jmx.JmxConfigurator.registerChannel;
 import static org.jgroups.util.Util.createConcurrentMap;
@@ -63,25 +76,62 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
 
     private static final Short GET_NODE = 0x1;
     private static final Short SET_NODES = 0x2;
+    private static final Short SET_ROUTING_TABLE = 0x3;
+    private static final Short APPLY_DELTAS = 0x4;
+    private static final Short UPDATE_DEMAND = 0x5;
+    private static final Short CONFIRM_ROUTING_TABLE = 0x6;
 
     private RpcDispatcher dispatcher = null;
     private JChannel channel;
     private volatile ClusterNode self;
 
-    private final ExecutorService updateNodesExecutor = Executors.newFixedThreadPool(
-            4,
+    private static final long NO_MERGE = -1;
+
+    private final DeltaHistory deltas = new DeltaHistory(() -> this.configuration.getDeltaHistorySize());
+
+    /**
+     * Epoch of the table when partitions have merged, the first update after that starts a new epoch.
+     */
+    private final AtomicLong mergedEpoch = new AtomicLong(NO_MERGE);
+
+    private final CoalescingScheduler updateScheduler = new CoalescingScheduler(
+            () -> {
+                try {
+                    update();
+                } catch (Exception e) {
+                    log.error("Can't update nodes list", e);
+                }
+            },
             new ThreadFactoryBuilder()
                     .setDaemon(true)
                     .setNameFormat("NodesUpdater-%d")
                     .build()
     );
 
+    private final RebalancingDispatcher rebalancingDispatcher = new RebalancingDispatcher(
+            (previous, current) -> {
+                try {
+                    this.rebalancingStrategy.ownershipChanged(this.routingStrategy.getOwnershipChange(previous, current));
+                } catch (Exception e) {
+                    log.error("Can't rebalance on node " + getSelfNode(), e);
+                }
+            },
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("Rebalancer-%d")
+                    .build()
+    );
+
     private static final Map<Short, Method> methods = createConcurrentMap(1);
 
     static {
         try {
-            methods.put(GET_NODE, ClusterMembershipServiceImpl.class.getMethod("getSelfNode"));
+            methods.put(GET_NODE, ClusterMembershipServiceImpl.class.getMethod("getSelfNodeInfo"));
             methods.put(SET_NODES, ClusterMembershipServiceImpl.class.getMethod("setNodes", List.class));
+            methods.put(SET_ROUTING_TABLE, ClusterMembershipServiceImpl.class.getMethod("setRoutingTable", RoutingTable.class));
+            methods.put(APPLY_DELTAS, ClusterMembershipServiceImpl.class.getMethod("applyDeltas", List.class));
+            methods.put(UPDATE_DEMAND, ClusterMembershipServiceImpl.class.getMethod("updateDemand", Address.class, List.class));
+            methods.put(CONFIRM_ROUTING_TABLE, ClusterMembershipServiceImpl.class.getMethod("confirmRoutingTable", RoutingTableStamp.class));
         } catch (NoSuchMethodException e) {
             throw new RuntimeException(e);
         }
@@ -99,8 +149,30 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
     @Inject
     private RebalancingStrategy rebalancingStrategy;
 
+    @Inject
+    private RoutingStrategy routingStrategy;
+
+    @Inject
+    private ShardingMetrics metrics;
+
+    @Inject
+    private NodeLoads nodeLoads;
+
+    @Inject
+    private RoutingTableTracker routingTableTracker;
+
+    @Inject
+    private RoutingTablePublisher routingTablePublisher;
+
+    private ScheduledExecutorService loadReporter;
+
     @Override
     public void start(@NotNull String name) {
+        if (configuration.isClientsEnabled()) {
+            // fails before the node joins the cluster if the clients channel can't be created
+            routingTablePublisher.start(name);
+        }
+
         try {
             channel = new JChannel(ClusterMembershipServiceImpl.class.getClassLoader().getResourceAsStream(configuration.getClusterConfig()));
             channel.setDiscardOwnMessages(true);
@@ -118,6 +190,19 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
             log.info("Node is started [{}]", getSelfNode());
 
             registerChannel(channel, getMBeanServer(), name);
+
+            metrics.setMembershipService(this);
+            metrics.start(name);
+
+            if (configuration.getLoadReportPeriod() > 0) {
+                loadReporter = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setDaemon(true)
+                                .setNameFormat("DemandReporter-%d")
+                                .build()
+                );
+                loadReporter.scheduleAtFixedRate(this::reportDemand, 0, configuration.getLoadReportPeriod(), TimeUnit.MILLISECONDS);
+            }
         } catch (Exception e) {
             log.error("Can't create channel", e);
             throw new RuntimeException(e);
@@ -126,7 +211,15 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
 
     @Override
     public void stop() {
+        if (loadReporter != null) {
+            loadReporter.shutdownNow();
+            loadReporter = null;
+        }
+
+        routingTablePublisher.stop();
         channel.close();
+        metrics.stop();
+        metrics.setMembershipService(null);
 
         log.debug("Node [{}] is stopped", self);
 
@@ -141,11 +234,21 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
     @Override
     public ClusterNode getSelfNode() {
         if (self == null) {
-            self = new ClusterNode(channel.getAddress());
+            ClusterNode node = new ClusterNode(channel.getAddress());
+            node.getProperties().put(ClusterNode.WEIGHT, configuration.getNodeWeight());
+            self = node;
         }
         return self;
     }
 
+    /**
+     * Answers {@link #getNode(Address)} and the discovery with {@link #getSelfNode()} in its streamed form,
+     * JGroups can't create a {@link ClusterNode} as a response value itself.
+     */
+    public byte[] getSelfNodeInfo() throws Exception {
+        return Util.streamableToByteBuffer(getSelfNode());
+    }
+
     @Override
     public ClusterNode getNode(@NotNull Address address) {
         log.debug("Getting node info about node [{}] on node [{}]", address, self);
@@ -155,11 +258,13 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
         }
 
         try {
-            return dispatcher.callRemoteMethod(
+            byte[] info = dispatcher.callRemoteMethod(
                     address,
                     new MethodCall(GET_NODE),
                     new RequestOptions(ResponseMode.GET_FIRST, 1000L));
+            return info != null ? ClusterNode.readNode(new ByteArrayDataInputStream(info)) : null;
         } catch (Exception e) {
+            countTimeout(e);
             log.error("Can't call method " + GET_NODE + " on remote node " + address, e);
         }
 
@@ -186,6 +291,7 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
                     new MethodCall(SET_NODES, nodes),
                     new RequestOptions(ResponseMode.GET_FIRST, 1000L));
         } catch (Exception e) {
+            countTimeout(e);
             log.error("Can't call method " + SET_NODES + " on remote node " + address, e);
         }
     }
@@ -194,6 +300,74 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
         nodeRepository.setNodes(nodes);
     }
 
+    public void setRoutingTable(RoutingTable table) {
+        RoutingTable previous = nodeRepository.getRoutingTable();
+        if (nodeRepository.setRoutingTable(table)) {
+            deltas.clear();
+            converged();
+            rebalance(previous, table);
+        } else {
+            log.debug("Stale routing table [{}] is dropped on node [{}], current table [{}]",
+                    table.getStamp(), getSelfNode(), nodeRepository.getRoutingTable().getStamp());
+        }
+    }
+
+    /**
+     * Applies the deltas which continue the current table, deltas of another base table are skipped.
+     *
+     * @return the stamp of the routing table after the update, it isn't the table the last delta ends with
+     * if this node has missed some changes or has another table of the same version
+     */
+    public RoutingTableStamp applyDeltas(List<RoutingTableDelta> deltas) {
+        RoutingTable previous = nodeRepository.getRoutingTable();
+        for (RoutingTableDelta delta : deltas) {
+            if (nodeRepository.apply(delta)) {
+                this.deltas.add(delta);
+            } else {
+                log.debug("Routing table delta [{}] -> [{}] isn't applicable on node [{}], current table [{}]",
+                        delta.getBase(), delta.getToVersion(), getSelfNode(), nodeRepository.getRoutingTable().getStamp());
+            }
+        }
+
+        RoutingTable current = nodeRepository.getRoutingTable();
+        if (current != previous) {
+            converged();
+            rebalance(previous, current);
+        }
+        return current.getStamp();
+    }
+
+    /**
+     * The coordinator has found nothing to change after a view change: the transition of this node is over
+     * if it has the same table, otherwise the coordinator brings it up to date.
+     *
+     * @return the stamp of the routing table of this node
+     */
+    public RoutingTableStamp confirmRoutingTable(RoutingTableStamp stamp) {
+        RoutingTable current = nodeRepository.getRoutingTable();
+        if (current.getStamp().equals(stamp)) {
+            converged();
+        }
+        return current.getStamp();
+    }
+
+    /**
+     * Hands the change over to the rebalancing thread, so neither the cluster lock
+     * nor an RPC handler waits for the strategy.
+     */
+    private void rebalance(RoutingTable previous, RoutingTable current) {
+        nodeLoads.retain(current.getNodes());
+        rebalancingDispatcher.dispatch(previous, current);
+    }
+
+    /**
+     * Takes the {@link ClusterNode#DEMAND demand} the router of a member has seen.
+     */
+    public void updateDemand(Address reporter, List<ClusterNode> shards) {
+        nodeLoads.update(reporter, shards.stream()
+                .filter(node -> !Double.isNaN(node.getDemand()))
+                .collect(Collectors.toMap(ClusterNode::getAddress, ClusterNode::getDemand)));
+    }
 
     @Override
     public void receive(Message message) {
@@ -208,69 +382,286 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
 
         log.info("Nodes list is changed {} for node [{}], creator [{}]", view, getSelfNode(), view.getCreator());
 
-        updateNodesExecutor.submit(
-                () -> {
-                    try {
-                        update();
-                    } catch (Exception e) {
-                        log.error("Can't update nodes list", e);
-                    }
-                }
-        );
+        metrics.viewChanged();
+        routingTableTracker.beginTransition(configuration.getTransitionTimeout());
 
+        if (view instanceof MergeView) {
+            // partitions may have changed the same table versions independently
+            mergedEpoch.set(nodeRepository.getRoutingTable().getEpoch());
+        }
+
+        // a burst of views is handled by one update against the latest view
+        updateScheduler.schedule(configuration.getUpdateDelay(), configuration.getUpdateMaxDelay());
+    }
+
+    @Override
+    public long getCoalescedUpdates() {
+        return updateScheduler.getCoalesced();
+    }
+
+    @Override
+    public long getSupersededRebalances() {
+        return rebalancingDispatcher.getSuperseded();
     }
 
     @Override
     public void getState(OutputStream output) throws Exception {
-        Util.objectToStream(nodeRepository.getNodes(), new DataOutputStream(output));
+        Util.objectToStream(nodeRepository.getRoutingTable(), new DataOutputStream(output));
     }
 
     @Override
     public void setState(InputStream input) throws Exception {
-        List<ClusterNode> state = (List<ClusterNode>) Util.objectFromStream(new DataInputStream(input));
-        nodeRepository.setNodes(state);
+        nodeRepository.setRoutingTable((RoutingTable) Util.objectFromStream(new DataInputStream(input)));
+        deltas.clear();
     }
 
-    private synchronized void update() {
-        lockService.setChannel(channel);
+    /**
+     * Asks all members at once, so the time doesn't depend on the cluster size. Members which
+     * haven't answered before the deadline keep their last known info. An unknown one is left out,
+     * it adds itself when it takes the lock; info guessed for it would never be replaced, because
+     * nodes are told apart by their address only. In coordinator-only mode no member adds itself,
+     * so an unknown one is known by its address.
+     */
+    private Set<ClusterNode> discoverNodes(@NotNull List<Address> members, @NotNull List<ClusterNode> knownNodes) throws Exception {
+        Address selfAddress = getSelfNode().getAddress();
+
+        List<Address> remoteMembers = getRemoteMembers(members);
+
+        RspList<byte[]> responses = remoteMembers.isEmpty()
+                ? new RspList<>()
+                : dispatcher.callRemoteMethods(
+                remoteMembers,
+                new MethodCall(GET_NODE),
+                new RequestOptions(ResponseMode.GET_ALL, configuration.getDiscoveryTimeout()));
+
+        Map<Address, ClusterNode> known = knownNodes.stream()
+                .collect(Collectors.toMap(ClusterNode::getAddress, node -> node));
+
+        return members.stream()
+                .map(address -> {
+                    if (selfAddress.equals(address)) {
+                        return getSelfNode();
+                    }
 
-        boolean acquired = false;
-        Lock lock = lockService.getLock(CLUSTER_LOCK);
+                    Rsp<byte[]> response = responses.get(address);
+                    if (response != null && response.wasReceived() && response.getValue() != null) {
+                        try {
+                            return ClusterNode.readNode(new ByteArrayDataInputStream(response.getValue()));
+                        } catch (Exception e) {
+                            log.error("Can't read info of node " + address, e);
+                        }
+                    }
+
+                    if (response != null && !response.wasReceived() && !response.wasSuspected() && !response.wasUnreachable()) {
+                        metrics.rpcTimedOut(1);
+                    }
+                    log.warn("Node [{}] hasn't sent its info to node [{}], response [{}]", address, selfAddress, response);
+                    ClusterNode node = known.get(address);
+                    if (node == null && configuration.isCoordinatorOnly()) {
+                        return new ClusterNode(address);
+                    }
+                    return node;
+                })
+                .filter(Objects::nonNull)
+                .collect(GuavaCollectors.toImmutableSet());
+    }
+
+    /**
+     * Sends the delta to all members with one multicast and waits for them concurrently, so
+     * a dead member costs a single timeout. Waiting keeps the next holder of the cluster lock
+     * from building its table over an outdated one, receivers drop outdated versions anyway.
+     * <p>
+     * Members which have missed previous changes report their table and catch up separately. A member
+     * with another table of the same version has been changed in another partition, the merge of
+     * the partitions starts a new epoch which replaces it.
+     */
+    private void publish(@NotNull RoutingTableDelta delta, @NotNull RoutingTable table, @NotNull List<Address> members) throws Exception {
+        publish(new MethodCall(APPLY_DELTAS, ImmutableList.of(delta)), table, members);
+    }
+
+    /**
+     * Confirms the unchanged table to the members, which wait for it since the view change when only
+     * the coordinator updates the table. Members which have missed previous changes catch up.
+     */
+    private void confirm(@NotNull RoutingTable table, @NotNull List<Address> members) throws Exception {
+        publish(new MethodCall(CONFIRM_ROUTING_TABLE, table.getStamp()), table, members);
+    }
+
+    /**
+     * @param call a call which answers with the stamp of the routing table of the member
+     */
+    private void publish(@NotNull MethodCall call, @NotNull RoutingTable table, @NotNull List<Address> members) throws Exception {
+        List<Address> remoteMembers = getRemoteMembers(members);
+        if (remoteMembers.isEmpty()) {
+            return;
+        }
+
+        RspList<RoutingTableStamp> responses = dispatcher.callRemoteMethods(
+                remoteMembers,
+                call,
+                new RequestOptions(ResponseMode.GET_ALL, configuration.getPublishTimeout()));
+
+        for (Address address : remoteMembers) {
+            Rsp<RoutingTableStamp> response = responses.get(address);
+            if (response == null || !response.wasReceived() || response.hasException() || response.getValue() == null) {
+                if (response != null && !response.wasReceived() && !response.wasSuspected() && !response.wasUnreachable()) {
+                    metrics.rpcTimedOut(1);
+                }
+                log.warn("Node [{}] hasn't accepted routing table [{}] from node [{}], response [{}]",
+                        address, table.getStamp(), getSelfNode(), response);
+            } else if (table.getStamp().isNewerThan(response.getValue())) {
+                catchUp(address, response.getValue());
+            } else if (!table.getStamp().equals(response.getValue())) {
+                log.warn("Node [{}] has routing table [{}] which isn't older than table [{}] published by node [{}]",
+                        address, response.getValue(), table.getStamp(), getSelfNode());
+            }
+        }
+    }
+
+    /**
+     * Sends the whole table to all members, they drop it if they have a newer one.
+     */
+    private void publish(@NotNull RoutingTable table, @NotNull List<Address> members) throws Exception {
+        List<Address> remoteMembers = getRemoteMembers(members);
+        if (remoteMembers.isEmpty()) {
+            return;
+        }
+
+        RspList<Object> responses = dispatcher.callRemoteMethods(
+                remoteMembers,
+                new MethodCall(SET_ROUTING_TABLE, table),
+                new RequestOptions(ResponseMode.GET_ALL, configuration.getPublishTimeout()));
+
+        for (Address address : remoteMembers) {
+            Rsp<Object> response = responses.get(address);
+            if (response == null || !response.wasReceived() || response.hasException()) {
+                if (response != null && !response.wasReceived() && !response.wasSuspected() && !response.wasUnreachable()) {
+                    metrics.rpcTimedOut(1);
+                }
+                log.warn("Node [{}] hasn't accepted routing table [{}] from node [{}], response [{}]",
+                        address, table.getStamp(), getSelfNode(), response);
+            }
+        }
+    }
+
+    /**
+     * Sends the missed deltas if they are still kept, otherwise the whole table.
+     */
+    private void catchUp(@NotNull Address address, @NotNull RoutingTableStamp stamp) {
+        List<RoutingTableDelta> missed = deltas.since(stamp);
         try {
-            acquired = lock.tryLock(5000L, TimeUnit.MILLISECONDS);
-            if (!acquired) {
-                return;
+            if (missed != null) {
+                log.debug("Node [{}] has table [{}], sending [{}] deltas from node [{}]",
+                        address, stamp, missed.size(), getSelfNode());
+
+                RoutingTableStamp actual = dispatcher.callRemoteMethod(
+                        address,
+                        new MethodCall(APPLY_DELTAS, missed),
+                        new RequestOptions(ResponseMode.GET_FIRST, configuration.getPublishTimeout()));
+                if (actual != null && !nodeRepository.getRoutingTable().getStamp().isNewerThan(actual)) {
+                    return;
+                }
             }
 
-            log.trace("Locked");
+            RoutingTable table = nodeRepository.getRoutingTable();
+            log.info("Node [{}] has table [{}], sending the whole routing table [{}] from node [{}]",
+                    address, stamp, table.getStamp(), getSelfNode());
 
-            View view = channel.getView();
+            dispatcher.callRemoteMethod(
+                    address,
+                    new MethodCall(SET_ROUTING_TABLE, table),
+                    new RequestOptions(ResponseMode.GET_FIRST, configuration.getPublishTimeout()));
+        } catch (Exception e) {
+            log.error("Can't bring node " + address + " up to date", e);
+        }
+    }
+
+    /**
+     * Sends the demand the router of this node has seen since the last report to all members
+     * without waiting, the routing table isn't changed.
+     */
+    private void reportDemand() {
+        try {
+            Address reporter = getSelfNode().getAddress();
+            List<ClusterNode> shards = nodeLoads.report(reporter).entrySet().stream()
+                    .map(rate -> {
+                        ClusterNode node = new ClusterNode(rate.getKey());
+                        node.getProperties().put(ClusterNode.DEMAND, rate.getValue());
+                        return node;
+                    })
+                    .collect(GuavaCollectors.toImmutableList());
+
+            dispatcher.callRemoteMethods(null, new MethodCall(UPDATE_DEMAND, reporter, shards), RequestOptions.ASYNC());
+        } catch (Exception e) {
+            log.warn("Can't report demand of node [{}]", getSelfNode(), e);
+        }
+    }
 
-            List<ClusterNode> oldNodes = nodeRepository.getNodes();
+    /**
+     * This node has got the table of the last view change.
+     */
+    private void converged() {
+        metrics.converged();
+        routingTableTracker.endTransition();
+    }
 
-            // update nodes
-            log.debug("Current nodes list are [{}] on node [{}]", oldNodes, getSelfNode());
+    private void countTimeout(Exception e) {
+        if (e instanceof TimeoutException) {
+            metrics.rpcTimedOut(1);
+        }
+    }
 
-            Set<ClusterNode> actualNodes = view.getMembers()
-                    .stream()
-                    .map(this::getNode)
-                    .collect(GuavaCollectors.toImmutableSet());
+    private List<Address> getRemoteMembers(@NotNull List<Address> members) {
+        Address selfAddress = getSelfNode().getAddress();
+
+        return members.stream()
+                .filter(address -> !selfAddress.equals(address))
+                .collect(GuavaCollectors.toImmutableList());
+    }
 
-            nodeRepository.sync(actualNodes, getSelfNode());
+    private void update() {
+        if (configuration.isCoordinatorOnly()) {
+            updateByCoordinator();
+        } else {
+            updateUnderLock();
+        }
+    }
+
+    /**
+     * The view coordinator is the only node which changes the table, so no lock is needed.
+     */
+    private void updateByCoordinator() {
+        View view = channel.getView();
+        Address coordinator = view.getMembers().get(0);
+        if (!getSelfNode().getAddress().equals(coordinator)) {
+            log.debug("Node [{}] isn't the coordinator of view [{}], the coordinator is [{}]",
+                    getSelfNode(), view.getViewId(), coordinator);
+            return;
+        }
 
-            List<ClusterNode> newNodes = nodeRepository.getNodes();
+        try {
+            update(view);
+        } catch (Exception e) {
+            log.error("Can't update nodes list", e);
+        }
+    }
 
-            log.info("New node list is [{}] on node [{}]", newNodes, getSelfNode());
+    private void updateUnderLock() {
+        lockService.setChannel(channel);
 
-            // update cluster
-            final List<ClusterNode> finalCurrentNodes = newNodes;
+        boolean acquired = false;
+        Lock lock = lockService.getLock(CLUSTER_LOCK);
+        try {
+            long start = System.nanoTime();
+            acquired = lock.tryLock(5000L, TimeUnit.MILLISECONDS);
+            metrics.lockAcquired(System.nanoTime() - start);
+            if (!acquired) {
+                return;
+            }
 
-            view.getMembers()
-                    .stream()
-                    .filter(address -> !getSelfNode().getAddress().equals(address))
-                    .forEach(address -> setNodes(address, finalCurrentNodes));
+            log.trace("Locked");
 
-            rebalancingStrategy.nodesChanged(oldNodes, newNodes);
+            update(channel.getView());
         } catch (Exception e) {
             log.error("Can't update nodes list", e);
         } finally {
@@ -280,4 +671,69 @@ public class ClusterMembershipServiceImpl extends ReceiverAdapter implements Clu
             }
         }
     }
+
+    private void update(@NotNull View view) throws Exception {
+        List<ClusterNode> oldNodes = nodeRepository.getNodes();
+
+        // update nodes
+        log.debug("Current nodes list are [{}] on node [{}]", oldNodes, getSelfNode());
+
+        Set<ClusterNode> actualNodes = discoverNodes(view.getMembers(), oldNodes);
+
+        RoutingTableChange change = nodeRepository.sync(actualNodes, getSelfNode());
+        if (isNewEpochRequired(change.getCurrent())) {
+            startEpoch(change.getPrevious(), change.getCurrent(), view.getMembers());
+            return;
+        }
+        if (change.isEmpty()) {
+            log.info("Node list is up to date, version [{}] on node [{}]", change.getCurrent().getVersion(), getSelfNode());
+            if (configuration.isCoordinatorOnly()) {
+                confirm(change.getCurrent(), view.getMembers());
+            }
+            converged();
+            return;
+        }
+        deltas.add(change.getDelta());
+
+        RoutingTable newTable = change.getCurrent();
+        List<ClusterNode> newNodes = newTable.getNodes();
+
+        log.info("New node list is [{}], version [{}] on node [{}], change [{}]", newNodes, newTable.getVersion(), getSelfNode(), change);
+
+        // update cluster
+        publish(change.getDelta(), newTable, view.getMembers());
+        converged();
+
+        rebalance(change.getPrevious(), newTable);
+    }
+
+    /**
+     * A new epoch starts when the cluster is formed and on the first update after partitions have merged,
+     * unless another node has already started one since the merge.
+     */
+    private boolean isNewEpochRequired(@NotNull RoutingTable table) {
+        long merged = mergedEpoch.getAndSet(NO_MERGE);
+        return table.getEpoch() == 0 || merged == table.getEpoch();
+    }
+
+    /**
+     * Publishes the synced nodes as the first table of a new epoch, it replaces the table of every member
+     * whatever its version is, so tables changed independently by the partitions don't survive the merge.
+     */
+    private void startEpoch(@NotNull RoutingTable previous, @NotNull RoutingTable synced, @NotNull List<Address> members) throws Exception {
+        RoutingTable table = new RoutingTable(
+                Math.max(System.currentTimeMillis(), synced.getEpoch() + 1),
+                synced.getVersion() + 1,
+                synced.getNodes()
+        );
+        nodeRepository.setRoutingTable(table);
+        deltas.clear();
+
+        log.info("New epoch [{}] of node list [{}], version [{}] on node [{}]", table.getEpoch(), table.getNodes(), table.getVersion(), getSelfNode());
+
+        publish(table, members);
+        converged();
+
+        rebalance(previous, table);
+    }
 }
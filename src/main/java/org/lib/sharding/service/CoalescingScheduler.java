@@ -0,0 +1,98 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a task on a single thread, at most one run is pending at any time.
+ * <p>
+ * A request debounces the pending run: the run is put off until no request has come for the delay,
+ * but never later than the max delay after the first request of the burst, so a steady stream of
+ * requests can't starve the task. A request which comes while the task is running schedules one
+ * more run after it. So the task must read the latest state by itself instead of getting it from a request.
+ */
+class CoalescingScheduler {
+    private final Runnable task;
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+    private ScheduledFuture<?> pending;
+    private long deadline;
+
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    CoalescingScheduler(@NotNull Runnable task, @NotNull ThreadFactory threadFactory) {
+        this.task = task;
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * @param delay    time to wait for more requests before the run, in milliseconds
+     * @param maxDelay longest time the first request of a burst waits for the run, in milliseconds;
+     *                 it's never shorter than the delay
+     */
+    void schedule(long delay, long maxDelay) {
+        requested.increment();
+        long now = System.nanoTime();
+        synchronized (lock) {
+            if (pending == null) {
+                deadline = now + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, maxDelay));
+                pending = executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            coalesced.increment();
+            // a run which can't be cancelled has already started and is waiting for the lock,
+            // it reads the state this request is about
+            long next = Math.min(now + TimeUnit.MILLISECONDS.toNanos(delay), deadline);
+            if (pending.getDelay(TimeUnit.NANOSECONDS) < next - now && pending.cancel(false)) {
+                pending = executor.schedule(this::run, Math.max(0, next - now), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    long getRequested() {
+        return requested.sum();
+    }
+
+    /**
+     * @return requests which haven't caused a run of their own
+     */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private void run() {
+        synchronized (lock) {
+            pending = null;
+        }
+        task.run();
+    }
+}
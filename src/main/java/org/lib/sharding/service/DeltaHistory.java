@@ -0,0 +1,86 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lib.sharding.domain.RoutingTableDelta;
+import org.lib.sharding.domain.RoutingTableStamp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Last applied deltas of the routing table, every delta starts at the table the previous one ends with.
+ * A member which has missed some changes gets them from here instead of the whole table.
+ */
+class DeltaHistory {
+    private final IntSupplier capacity;
+
+    private final Deque<RoutingTableDelta> deltas = new ArrayDeque<>();
+
+    /**
+     * @param capacity the number of deltas to keep, it's read on every add
+     */
+    DeltaHistory(@NotNull IntSupplier capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * A delta which doesn't continue the last one starts the history over.
+     */
+    synchronized void add(@NotNull RoutingTableDelta delta) {
+        RoutingTableDelta last = deltas.peekLast();
+        if (last != null && (last.getEpoch() != delta.getEpoch() || last.getToVersion() != delta.getFromVersion())) {
+            deltas.clear();
+        }
+        deltas.addLast(delta);
+        while (deltas.size() > capacity.getAsInt()) {
+            deltas.removeFirst();
+        }
+    }
+
+    synchronized void clear() {
+        deltas.clear();
+    }
+
+    /**
+     * @return deltas from the given table to the latest one or null if they aren't kept
+     */
+    @Nullable
+    synchronized List<RoutingTableDelta> since(@NotNull RoutingTableStamp base) {
+        List<RoutingTableDelta> result = new ArrayList<>();
+        for (RoutingTableDelta delta : deltas) {
+            if (!result.isEmpty() || delta.getBase().equals(base)) {
+                result.add(delta);
+            }
+        }
+        return result.isEmpty() ? null : ImmutableList.copyOf(result);
+    }
+
+    synchronized int size() {
+        return deltas.size();
+    }
+}
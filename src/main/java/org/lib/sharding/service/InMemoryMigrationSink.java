@@ -0,0 +1,64 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.MigrationEntry;
+
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps written entries per target node in memory, to run migrations locally and in tests.
+ */
+@Singleton
+public class InMemoryMigrationSink implements MigrationSink {
+    /**
+     * Stands for a null value, the map doesn't allow nulls.
+     */
+    public static final Object NULL = new Object();
+
+    private final Map<ClusterNode, Map<Object, Object>> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(@NotNull ClusterNode target, @NotNull List<MigrationEntry> batch) {
+        Map<Object, Object> values = entries.computeIfAbsent(target, node -> new ConcurrentHashMap<>());
+        for (MigrationEntry entry : batch) {
+            values.put(entry.getKey(), entry.getValue() == null ? NULL : entry.getValue());
+        }
+    }
+
+    /**
+     * @return keys and values written to the given node, null values are replaced by {@link #NULL}
+     */
+    @NotNull
+    public Map<Object, Object> getEntries(@NotNull ClusterNode target) {
+        return Collections.unmodifiableMap(entries.getOrDefault(target, Collections.emptyMap()));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,80 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.util.Util;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.repository.RoutingTableListener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in transport which serves the tables of a member repository in the same JVM, e.g. for tests.
+ * Tables are copied through their binary form, so clients never share instances with the member.
+ */
+public class InProcessRoutingTableSource implements RoutingTableSource {
+    private final NodeRepository member;
+    private final List<RoutingTableListener> subscribers = new CopyOnWriteArrayList<>();
+
+    public InProcessRoutingTableSource(@NotNull NodeRepository member) {
+        this.member = member;
+        member.addListener(this::push);
+    }
+
+    @NotNull
+    @Override
+    public RoutingTable fetch() throws Exception {
+        return copy(member.getRoutingTable());
+    }
+
+    @NotNull
+    @Override
+    public AutoCloseable subscribe(@NotNull RoutingTableListener listener) {
+        subscribers.add(listener);
+        return () -> subscribers.remove(listener);
+    }
+
+    private void push(RoutingTable previous, RoutingTable current) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        RoutingTable previousCopy;
+        RoutingTable currentCopy;
+        try {
+            previousCopy = copy(previous);
+            currentCopy = copy(current);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't copy routing table version " + current.getVersion(), e);
+        }
+
+        for (RoutingTableListener subscriber : subscribers) {
+            subscriber.tableChanged(previousCopy, currentCopy);
+        }
+    }
+
+    private static RoutingTable copy(RoutingTable table) throws Exception {
+        return (RoutingTable) Util.streamableFromByteBuffer(RoutingTable.class, Util.streamableToByteBuffer(table));
+    }
+}
@@ -0,0 +1,171 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.Address;
+import org.jgroups.JChannel;
+import org.jgroups.blocks.MethodCall;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
+import org.jgroups.blocks.RpcDispatcher;
+import org.jgroups.util.Rsp;
+import org.jgroups.util.RspList;
+import org.lib.sharding.configuration.RouterPropertiesConfiguration;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.RoutingTableListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.jgroups.util.Util.createConcurrentMap;
+import static org.lib.sharding.service.RoutingTablePublisher.CLUSTER_NAME;
+import static org.lib.sharding.service.RoutingTablePublisher.GET_ROUTING_TABLE;
+import static org.lib.sharding.service.RoutingTablePublisher.PUSH_ROUTING_TABLE;
+
+/**
+ * Transport of the clients to the members which run {@link RoutingTablePublisher}: the client joins
+ * their channel ({@code sharding.router.client.config}) while it has subscribers, takes the pushed
+ * tables and fetches the newest table of the members.
+ */
+@Singleton
+public class JGroupsRoutingTableSource implements RoutingTableSource {
+    private static final Logger log = LoggerFactory.getLogger(JGroupsRoutingTableSource.class);
+
+    private static final Map<Short, Method> methods = createConcurrentMap(1);
+
+    static {
+        try {
+            methods.put(PUSH_ROUTING_TABLE, JGroupsRoutingTableSource.class.getMethod("pushRoutingTable", RoutingTable.class));
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Inject
+    private RouterPropertiesConfiguration configuration;
+
+    private final List<RoutingTableListener> subscribers = new CopyOnWriteArrayList<>();
+
+    private JChannel channel;
+    private volatile RpcDispatcher dispatcher;
+    private volatile RoutingTable pushed = RoutingTable.EMPTY;
+
+    /**
+     * Asks all members at once and takes the newest of their tables.
+     *
+     * @throws IllegalStateException if there are no subscribers or no member has answered
+     */
+    @NotNull
+    @Override
+    public RoutingTable fetch() throws Exception {
+        RpcDispatcher dispatcher = this.dispatcher;
+        checkState(dispatcher != null, "Routing table source has no subscribers");
+
+        List<Address> members = dispatcher.getChannel().getView().getMembers().stream()
+                .filter(RoutingTablePublisher::isMember)
+                .collect(Collectors.toList());
+        checkState(!members.isEmpty(), "No member is serving routing tables");
+
+        RoutingTable newest = null;
+        RspList<RoutingTable> responses = dispatcher.callRemoteMethods(
+                members,
+                new MethodCall(GET_ROUTING_TABLE),
+                new RequestOptions(ResponseMode.GET_ALL, configuration.getClientFetchTimeout()));
+
+        for (Rsp<RoutingTable> response : responses.values()) {
+            RoutingTable table = response.wasReceived() && !response.hasException() ? response.getValue() : null;
+            if (table != null && (newest == null || table.isNewerThan(newest))) {
+                newest = table;
+            }
+        }
+        checkState(newest != null, "No member has sent its routing table, responses %s", responses);
+        return newest;
+    }
+
+    /**
+     * Connects to the members with the first subscriber and disconnects with the last one.
+     */
+    @NotNull
+    @Override
+    public synchronized AutoCloseable subscribe(@NotNull RoutingTableListener listener) throws Exception {
+        if (channel == null) {
+            connect();
+        }
+        subscribers.add(listener);
+
+        return () -> unsubscribe(listener);
+    }
+
+    /**
+     * Takes the push of a member, the previous table is the last pushed one.
+     */
+    public void pushRoutingTable(RoutingTable table) {
+        RoutingTable previous = pushed;
+        pushed = table;
+
+        for (RoutingTableListener subscriber : subscribers) {
+            try {
+                subscriber.tableChanged(previous, table);
+            } catch (Exception e) {
+                log.error("Routing table listener has failed on table [{}]", table.getStamp(), e);
+            }
+        }
+    }
+
+    private void connect() throws Exception {
+        checkState(configuration.getClientConfig() != null, "sharding.router.client.config isn't set");
+
+        JChannel channel = new JChannel(JGroupsRoutingTableSource.class.getClassLoader().getResourceAsStream(configuration.getClientConfig()));
+        channel.setDiscardOwnMessages(true);
+
+        RpcDispatcher dispatcher = new RpcDispatcher(channel, this);
+        dispatcher.setMethodLookup(methods::get);
+
+        channel.connect(CLUSTER_NAME);
+
+        this.channel = channel;
+        this.dispatcher = dispatcher;
+
+        log.info("Routing table client [{}] is connected to members {}", channel.getAddress(), channel.getView());
+    }
+
+    private synchronized void unsubscribe(RoutingTableListener listener) {
+        if (!subscribers.remove(listener) || !subscribers.isEmpty()) {
+            return;
+        }
+
+        log.debug("Routing table client [{}] is disconnected", channel.getAddress());
+
+        dispatcher = null;
+        channel.close();
+        channel = null;
+        pushed = RoutingTable.EMPTY;
+    }
+}
@@ -0,0 +1,82 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+
+import static org.lib.sharding.service.NodeLocators.contains;
+import static org.lib.sharding.util.ConsistentHashing.consistentHash;
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+class JumpNodeLocator implements NodeLocator {
+    private static final long PROBE_INCREMENT = 0x9e3779b97f4a7c15L;
+    private static final int MAX_PROBES_PER_NODE = 4;
+
+    private final RoutingTable table;
+
+    JumpNodeLocator(@NotNull RoutingTable table) {
+        this.table = table;
+    }
+
+    @NotNull
+    @Override
+    public RoutingTable getRoutingTable() {
+        return table;
+    }
+
+    @Override
+    public int getNodeIndex(long hash) {
+        return consistentHash(hash, table.size());
+    }
+
+    /**
+     * Replicas are jump hashes of derived probes, so they are as stable as the primary node.
+     * If probing keeps hitting the chosen nodes, the rest is taken in the nodes list order.
+     */
+    @Override
+    public int getNodeIndexes(long hash, @NotNull int[] result, int limit) {
+        int size = table.size();
+        int count = Math.min(limit, size);
+        if (count <= 0) {
+            return 0;
+        }
+
+        result[0] = consistentHash(hash, size);
+        int found = 1;
+
+        long probe = hash;
+        for (int attempt = 0; found < count && attempt < MAX_PROBES_PER_NODE * count; attempt++) {
+            probe = fmix64(probe + PROBE_INCREMENT);
+            int index = consistentHash(probe, size);
+            if (!contains(result, found, index)) {
+                result[found++] = index;
+            }
+        }
+
+        for (int index = result[0]; found < count; index = index + 1 == size ? 0 : index + 1) {
+            if (!contains(result, found, index)) {
+                result[found++] = index;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,86 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.RoutingTable;
+
+import javax.inject.Singleton;
+import java.util.List;
+
+/**
+ * Jump consistent hash over the node indexes. Keys are remapped minimally only when
+ * the nodes list grows or shrinks at the end, see {@link org.lib.sharding.repository.SimpleNodeRepository}.
+ * Node weights are ignored.
+ */
+@Singleton
+public class JumpRoutingStrategy implements RoutingStrategy {
+
+    @NotNull
+    @Override
+    public NodeLocator createLocator(@NotNull RoutingTable table) {
+        return new JumpNodeLocator(table);
+    }
+
+    /**
+     * Keys are spread over the whole ring, so only node pairs are known. When the buckets count
+     * grows from n to m a key moves to one of the new buckets with the probability (m - n) / m,
+     * when it shrinks the keys of the dropped buckets move to the remaining ones evenly.
+     * A bucket which has got another node hands its staying keys over too.
+     */
+    @NotNull
+    @Override
+    public OwnershipChange getOwnershipChange(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        OwnershipTransfers transfers = new OwnershipTransfers();
+        if (previous.isEmpty() || current.isEmpty()) {
+            return transfers.build(previous, current);
+        }
+
+        List<ClusterNode> before = previous.getNodes();
+        List<ClusterNode> after = current.getNodes();
+        int n = before.size();
+        int m = after.size();
+
+        double staying = 1.0 / Math.max(n, m);
+        for (int bucket = 0; bucket < Math.min(n, m); bucket++) {
+            transfers.add(before.get(bucket), after.get(bucket), staying);
+        }
+
+        double moving = 1.0 / ((double) n * m);
+        if (m > n) {
+            for (int from = 0; from < n; from++) {
+                for (int to = n; to < m; to++) {
+                    transfers.add(before.get(from), after.get(to), moving);
+                }
+            }
+        } else if (m < n) {
+            for (int from = m; from < n; from++) {
+                for (int to = 0; to < m; to++) {
+                    transfers.add(before.get(from), after.get(to), moving);
+                }
+            }
+        }
+
+        return transfers.build(previous, current);
+    }
+}
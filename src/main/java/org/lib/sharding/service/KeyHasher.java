@@ -0,0 +1,39 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.ImplementedBy;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Turns a routing key into the 64-bit hash which is used to pick a node.
+ * <p>
+ * {@link #hashLong(long)} and {@link #hashKey(Object)} must agree for boxed longs,
+ * so a key is routed to the same node regardless of the call path.
+ */
+@ImplementedBy(Murmur3KeyHasher.class)
+public interface KeyHasher {
+    /**
+     * Must not allocate, it's called on the primitive routing path.
+     */
+    long hashLong(long key);
+
+    long hashKey(@NotNull Object key);
+}
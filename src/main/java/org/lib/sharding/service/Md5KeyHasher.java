@@ -0,0 +1,50 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.hash.HashFunction;
+import org.jetbrains.annotations.NotNull;
+
+import javax.inject.Singleton;
+
+import static com.google.common.hash.Hashing.md5;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * MD5 over the UTF-8 string form of the key.
+ * <p>
+ * Compatibility mode: keys are spread exactly as in the previous versions,
+ * bind {@link KeyHasher} to this class to keep the existing data placement.
+ * It allocates on every call.
+ */
+@Singleton
+public class Md5KeyHasher implements KeyHasher {
+    private static final HashFunction MD5 = md5();
+
+    @Override
+    public long hashLong(long key) {
+        return MD5.hashString(Long.toString(key), UTF_8).padToLong();
+    }
+
+    @Override
+    public long hashKey(@NotNull Object key) {
+        return MD5.hashString(key.toString(), UTF_8).padToLong();
+    }
+}
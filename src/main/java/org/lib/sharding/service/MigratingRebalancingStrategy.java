@@ -0,0 +1,110 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lib.sharding.configuration.MigrationPropertiesConfiguration;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Moves the keys this node has handed over with the {@link MigrationEngine}.
+ * Bind it as the {@link RebalancingStrategy} together with a {@link MigrationSource} and a {@link MigrationSink}.
+ */
+@Singleton
+public class MigratingRebalancingStrategy implements RebalancingStrategy {
+    private static final Logger log = LoggerFactory.getLogger(MigratingRebalancingStrategy.class);
+
+    @Inject
+    private MigrationEngine migrationEngine;
+
+    @Inject
+    private RoutingStrategy routingStrategy;
+
+    @Inject
+    private MigrationSource source;
+
+    @Inject
+    private MigrationSink sink;
+
+    @Inject
+    private Provider<ClusterMembershipService> membershipService;
+
+    @Inject
+    private MigrationPropertiesConfiguration configuration;
+
+    private volatile Migration lastMigration;
+
+    @Override
+    public void nodesChanged(@NotNull List<ClusterNode> oldNodes, @NotNull List<ClusterNode> newNodes) {
+        log.info("Old [{}], new [{}]", oldNodes, newNodes);
+    }
+
+    /**
+     * A migration which is still running is superseded: it's cancelled and the new one
+     * starts from its previous table, so the keys it hasn't moved yet are moved by the new one.
+     * The batches being written are awaited for sharding.migration.cancelTimeout at most,
+     * so a stuck sink doesn't hold the next rebalances back.
+     */
+    @Override
+    public void ownershipChanged(@NotNull OwnershipChange change) {
+        Migration running = lastMigration;
+        if (running != null && !running.isDone()) {
+            log.info("Migration to version [{}] is superseded by version [{}]",
+                    running.getChange().getCurrent().getVersion(), change.getCurrent().getVersion());
+            running.cancel();
+            try {
+                running.getFuture().get(configuration.getCancelTimeout(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("Migration [{}] hasn't finished its batches in [{}] ms, starting the next one",
+                        running, configuration.getCancelTimeout());
+            } catch (ExecutionException e) {
+                log.error("Migration to version " + running.getChange().getCurrent().getVersion() + " has failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            change = routingStrategy.getOwnershipChange(running.getChange().getPrevious(), change.getCurrent());
+        }
+
+        ClusterNode self = membershipService.get().getSelfNode();
+        lastMigration = migrationEngine.migrate(change, self, source, sink);
+    }
+
+    /**
+     * @return the latest started migration, null if nothing has been migrated yet
+     */
+    @Nullable
+    public Migration getLastMigration() {
+        return lastMigration;
+    }
+}
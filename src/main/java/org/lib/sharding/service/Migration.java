@@ -0,0 +1,169 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of moving the keys of one ownership change from this node to their new owners.
+ */
+public class Migration {
+    private final OwnershipChange change;
+    private final ClusterNode self;
+    private final long startTime = System.nanoTime();
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder migrated = new LongAdder();
+    private final LongAdder migratedBytes = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong queued = new AtomicLong();
+
+    private final CompletableFuture<Migration> future = new CompletableFuture<>();
+    private volatile boolean cancelled;
+    private volatile long finishTime;
+
+    Migration(@NotNull OwnershipChange change, @NotNull ClusterNode self) {
+        this.change = change;
+        this.self = self;
+    }
+
+    @NotNull
+    public OwnershipChange getChange() {
+        return change;
+    }
+
+    @NotNull
+    public ClusterNode getSelf() {
+        return self;
+    }
+
+    /**
+     * @return local entries which have been checked
+     */
+    public long getScanned() {
+        return scanned.sum();
+    }
+
+    /**
+     * @return entries which have been written to their new owners
+     */
+    public long getMigrated() {
+        return migrated.sum();
+    }
+
+    public long getMigratedBytes() {
+        return migratedBytes.sum();
+    }
+
+    /**
+     * @return entries of the batches which haven't been written
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return entries found to move which haven't been written yet, the remaining work of the scanned part
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return migrated entries per second
+     */
+    public double getThroughput() {
+        long end = isDone() ? finishTime : System.nanoTime();
+        long elapsed = Math.max(1, end - startTime);
+        return getMigrated() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops scanning and drops the batches which haven't been sent yet, the ones being written are completed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return completed when all batches are either written or failed, or the migration is cancelled
+     */
+    @NotNull
+    public CompletableFuture<Migration> getFuture() {
+        return future;
+    }
+
+    void scanned() {
+        scanned.increment();
+    }
+
+    void queued(int entries) {
+        queued.addAndGet(entries);
+    }
+
+    void migrated(int entries, long bytes) {
+        queued.addAndGet(-entries);
+        migrated.add(entries);
+        migratedBytes.add(bytes);
+    }
+
+    void failed(int entries) {
+        queued.addAndGet(-entries);
+        failed.add(entries);
+    }
+
+    void dropped(int entries) {
+        queued.addAndGet(-entries);
+    }
+
+    void finish() {
+        finishTime = System.nanoTime();
+        future.complete(this);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("toVersion", change.getCurrent().getVersion())
+                .add("scanned", getScanned())
+                .add("migrated", getMigrated())
+                .add("failed", getFailed())
+                .add("queued", getQueued())
+                .add("cancelled", cancelled)
+                .toString();
+    }
+}
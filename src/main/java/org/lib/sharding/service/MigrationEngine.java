@@ -0,0 +1,225 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.configuration.MigrationPropertiesConfiguration;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.HashRange;
+import org.lib.sharding.domain.MigrationEntry;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.OwnershipTransfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Moves the keys which this node has handed over to their new owners.
+ * <p>
+ * Local data is scanned once per migration on its own thread, every entry is placed with
+ * the new routing table and collected into per target batches. Batches are written in parallel
+ * by a shared pool, the rate and the bandwidth budgets are shared by all migrations too,
+ * so rebalancing doesn't starve the live traffic.
+ */
+@Singleton
+public class MigrationEngine {
+    private static final Logger log = LoggerFactory.getLogger(MigrationEngine.class);
+
+    @Inject
+    private KeyHasher keyHasher;
+
+    @Inject
+    private RoutingStrategy routingStrategy;
+
+    private final ExecutorService scanners = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("Migration-%d")
+                    .build()
+    );
+
+    private ExecutorService writers;
+    private Semaphore pendingBatches;
+    private int batchSize;
+    private RateLimiter rateLimiter;
+    private RateLimiter bandwidthLimiter;
+
+    @Inject
+    void configure(MigrationPropertiesConfiguration configuration) {
+        writers = Executors.newFixedThreadPool(
+                configuration.getThreads(),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("MigrationWriter-%d")
+                        .build()
+        );
+        pendingBatches = new Semaphore(configuration.getThreads() * 2);
+        batchSize = configuration.getBatchSize();
+        rateLimiter = configuration.getRate() > 0 ? RateLimiter.create(configuration.getRate()) : null;
+        bandwidthLimiter = configuration.getBandwidth() > 0 ? RateLimiter.create(configuration.getBandwidth()) : null;
+    }
+
+    /**
+     * @return progress of the started migration, it's done at once if the node hands nothing over
+     */
+    @NotNull
+    public Migration migrate(
+            @NotNull OwnershipChange change,
+            @NotNull ClusterNode self,
+            @NotNull MigrationSource source,
+            @NotNull MigrationSink sink
+    ) {
+        Migration migration = new Migration(change, self);
+
+        List<OwnershipTransfer> transfers = change.getTransfersFrom(self);
+        if (transfers.isEmpty() || change.getCurrent().isEmpty()) {
+            migration.finish();
+            return migration;
+        }
+
+        log.info("Migrating keys of node [{}] to version [{}], transfers [{}]", self, change.getCurrent().getVersion(), transfers);
+
+        scanners.submit(() -> run(migration, transfers, source, sink));
+        return migration;
+    }
+
+    private void run(Migration migration, List<OwnershipTransfer> transfers, MigrationSource source, MigrationSink sink) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        try {
+            NodeLocator locator = routingStrategy.createPlacementLocator(migration.getChange().getCurrent());
+            List<ClusterNode> nodes = locator.getRoutingTable().getNodes();
+
+            Map<ClusterNode, OwnershipTransfer> targets = new HashMap<>();
+            for (OwnershipTransfer transfer : transfers) {
+                targets.put(transfer.getTo(), transfer);
+            }
+
+            Map<ClusterNode, List<MigrationEntry>> batches = new HashMap<>();
+            Iterator<MigrationEntry> entries = source.scan(getRanges(transfers));
+            while (entries.hasNext() && !migration.isCancelled()) {
+                MigrationEntry entry = entries.next();
+                migration.scanned();
+
+                long hash = keyHasher.hashKey(entry.getKey());
+                ClusterNode owner = nodes.get(locator.getNodeIndex(hash));
+                OwnershipTransfer transfer = targets.get(owner);
+                if (transfer == null || !transfer.contains(hash)) {
+                    continue;
+                }
+
+                List<MigrationEntry> batch = batches.computeIfAbsent(owner, node -> new ArrayList<>(batchSize));
+                batch.add(entry);
+                migration.queued(1);
+                if (batch.size() >= batchSize) {
+                    writes.add(write(migration, owner, batches.remove(owner), source, sink));
+                }
+            }
+
+            for (Map.Entry<ClusterNode, List<MigrationEntry>> batch : batches.entrySet()) {
+                if (migration.isCancelled()) {
+                    migration.dropped(batch.getValue().size());
+                } else {
+                    writes.add(write(migration, batch.getKey(), batch.getValue(), source, sink));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Migration to version " + migration.getChange().getCurrent().getVersion() + " is interrupted", e);
+        } finally {
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[writes.size()]))
+                    .whenComplete((result, e) -> {
+                        log.info("Migration is finished [{}]", migration);
+                        migration.finish();
+                    });
+        }
+    }
+
+    /**
+     * Throttles the scanning thread, so at most two batches per writer are waiting.
+     */
+    private CompletableFuture<Void> write(
+            Migration migration,
+            ClusterNode target,
+            List<MigrationEntry> batch,
+            MigrationSource source,
+            MigrationSink sink
+    ) throws InterruptedException {
+        int bytes = 0;
+        for (MigrationEntry entry : batch) {
+            bytes += entry.getSize();
+        }
+
+        if (rateLimiter != null) {
+            rateLimiter.acquire(batch.size());
+        }
+        if (bandwidthLimiter != null && bytes > 0) {
+            bandwidthLimiter.acquire(bytes);
+        }
+        pendingBatches.acquire();
+
+        long batchBytes = bytes;
+        return CompletableFuture.runAsync(
+                () -> {
+                    try {
+                        if (migration.isCancelled()) {
+                            migration.dropped(batch.size());
+                            return;
+                        }
+                        sink.write(target, batch);
+                        source.migrated(batch);
+                        migration.migrated(batch.size(), batchBytes);
+                    } catch (Exception e) {
+                        log.error("Can't migrate " + batch.size() + " entries to node " + target, e);
+                        migration.failed(batch.size());
+                    } finally {
+                        pendingBatches.release();
+                    }
+                },
+                writers
+        );
+    }
+
+    /**
+     * @return ranges of all transfers, or null if any of them isn't range based
+     */
+    private static List<HashRange> getRanges(List<OwnershipTransfer> transfers) {
+        List<HashRange> ranges = new ArrayList<>();
+        for (OwnershipTransfer transfer : transfers) {
+            if (transfer.getRanges() == null) {
+                return null;
+            }
+            ranges.addAll(transfer.getRanges());
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,37 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.MigrationEntry;
+
+import java.util.List;
+
+/**
+ * Delivers migrated entries to their new owner, it's invoked from several threads at once.
+ */
+public interface MigrationSink {
+    /**
+     * @throws Exception if the batch isn't written, it's counted as failed then
+     */
+    void write(@NotNull ClusterNode target, @NotNull List<MigrationEntry> entries) throws Exception;
+}
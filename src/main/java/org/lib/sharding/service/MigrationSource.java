@@ -0,0 +1,49 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lib.sharding.domain.HashRange;
+import org.lib.sharding.domain.MigrationEntry;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Local data of the node, the migration reads the entries to move from it.
+ */
+public interface MigrationSource {
+    /**
+     * The iterator is consumed by a single thread. Entries out of the ranges are skipped,
+     * so a source may ignore the ranges and return everything.
+     *
+     * @param ranges hash ranges of the keys to move, null if the keys are spread over the whole ring
+     */
+    @NotNull
+    Iterator<MigrationEntry> scan(@Nullable List<HashRange> ranges);
+
+    /**
+     * Invoked after the entries have been written to their new owner, e.g. to delete them locally.
+     */
+    default void migrated(@NotNull List<MigrationEntry> entries) {
+    }
+}
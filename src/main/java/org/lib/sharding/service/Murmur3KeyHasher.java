@@ -0,0 +1,74 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.hash.HashFunction;
+import org.jetbrains.annotations.NotNull;
+
+import javax.inject.Singleton;
+
+import static com.google.common.hash.Hashing.murmur3_128;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+/**
+ * Murmur3 x64 128-bit hash (seed 0) truncated to the first 64 bits.
+ * <p>
+ * Long keys are hashed over their raw 8 bytes without any allocation,
+ * the result is the same as {@code murmur3_128().hashLong(key).padToLong()}.
+ */
+@Singleton
+public class Murmur3KeyHasher implements KeyHasher {
+    private static final HashFunction MURMUR3 = murmur3_128();
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    @Override
+    public long hashLong(long key) {
+        long h1 = 0;
+        long h2 = 0;
+
+        // a single 8 bytes tail block
+        long k1 = key * C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+
+        h1 ^= 8;
+        h2 ^= 8;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+
+        return h1 + h2;
+    }
+
+    @Override
+    public long hashKey(@NotNull Object key) {
+        if (key instanceof Long) {
+            return hashLong((Long) key);
+        }
+        return MURMUR3.hashString(key.toString(), UTF_8).padToLong();
+    }
+}
@@ -0,0 +1,47 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+
+/**
+ * Maps a key hash to a node of a single routing table snapshot.
+ * A locator is immutable and built once per snapshot, so it can precompute
+ * whatever makes the lookup cheap.
+ */
+public interface NodeLocator {
+    @NotNull
+    RoutingTable getRoutingTable();
+
+    /**
+     * @return index of the node in the {@link #getRoutingTable() routing table}
+     */
+    int getNodeIndex(long hash);
+
+    /**
+     * Fills the preference list of the key: distinct node indexes, the first one is
+     * {@link #getNodeIndex(long)}. The order must be stable for the same snapshot.
+     *
+     * @return number of indexes written, {@code min(limit, nodes count)}
+     */
+    int getNodeIndexes(long hash, @NotNull int[] result, int limit);
+}
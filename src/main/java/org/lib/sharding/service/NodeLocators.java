@@ -0,0 +1,62 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.hash.HashFunction;
+import org.jgroups.util.Util;
+import org.lib.sharding.domain.ClusterNode;
+
+import static com.google.common.hash.Hashing.murmur3_128;
+
+/**
+ * Helpers to derive stable per node values, they must be the same on every node of the cluster.
+ */
+class NodeLocators {
+    private static final HashFunction ADDRESS_HASH = murmur3_128();
+
+    private NodeLocators() {
+    }
+
+    static boolean contains(int[] indexes, int count, int index) {
+        for (int i = 0; i < count; i++) {
+            if (indexes[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long addressHash(byte[] address, int salt) {
+        return ADDRESS_HASH.newHasher()
+                .putBytes(address)
+                .putInt(salt)
+                .hash()
+                .padToLong();
+    }
+
+    static byte[] addressBytes(ClusterNode node) {
+        try {
+            return Util.streamableToByteBuffer(node.getAddress());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Can't serialize address of node " + node, e);
+        }
+    }
+}
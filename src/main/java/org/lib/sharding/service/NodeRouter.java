@@ -22,7 +22,10 @@ package org.lib.sharding.service;
 import org.jetbrains.annotations.NotNull;
 import org.lib.sharding.domain.ClusterNode;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface NodeRouter<T> {
     /**
@@ -31,6 +34,38 @@ public interface NodeRouter<T> {
      */
     ClusterNode getNodeByKey(@NotNull T key);
 
+    /**
+     * Completes at once if the routing table is stable, otherwise when the membership change
+     * in progress is over or the first table comes. No thread is blocked meanwhile,
+     * apply a timeout to the future if the caller can't wait for long.
+     */
+    CompletableFuture<ClusterNode> getNodeByKeyAsync(@NotNull T key);
+
+    /**
+     * Preference list of the key, e.g. for replicated writes.
+     *
+     * @return up to {@code replicationFactor} distinct nodes in the stable order,
+     * the first one is the node of {@link #getNodeByKey(Object)}
+     * @throws IllegalStateException if there is no nodes
+     *                               has been found for a given key.
+     */
+    List<ClusterNode> getNodesByKey(@NotNull T key, int replicationFactor);
+
+    /**
+     * Same as {@link #getNodesByKey(Object, int)}, but fills a preallocated array.
+     *
+     * @return number of nodes written to the result
+     */
+    int getNodesByKey(@NotNull T key, @NotNull ClusterNode[] result);
+
+    /**
+     * Groups the keys by their nodes, all keys are routed against the same nodes list.
+     *
+     * @throws IllegalStateException if there is no nodes
+     *                               has been found for a given key.
+     */
+    Map<ClusterNode, List<T>> getNodesByKeys(@NotNull Iterable<T> keys);
+
     int getNodesCount();
 
     Set<ClusterNode> getNodes();
@@ -0,0 +1,90 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.HashRange;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.OwnershipTransfer;
+import org.lib.sharding.domain.RoutingTable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates moved keys per pair of nodes, adjacent hash ranges of a pair are merged.
+ */
+class OwnershipTransfers {
+    private final Map<ClusterNode, Map<ClusterNode, Transfer>> transfers = new LinkedHashMap<>();
+
+    void add(@NotNull ClusterNode from, @NotNull ClusterNode to, double fraction) {
+        if (!from.equals(to)) {
+            get(from, to).fraction += fraction;
+        }
+    }
+
+    void add(@NotNull ClusterNode from, @NotNull ClusterNode to, long start, long end) {
+        if (from.equals(to)) {
+            return;
+        }
+
+        Transfer transfer = get(from, to);
+        if (transfer.ranges == null) {
+            transfer.ranges = new ArrayList<>();
+        }
+
+        List<HashRange> ranges = transfer.ranges;
+        HashRange range = new HashRange(start, end);
+        if (!ranges.isEmpty() && ranges.get(ranges.size() - 1).getEnd() == start) {
+            HashRange last = ranges.remove(ranges.size() - 1);
+            transfer.fraction -= last.getFraction();
+            range = new HashRange(last.getStart(), end);
+        }
+        ranges.add(range);
+        transfer.fraction += range.getFraction();
+    }
+
+    @NotNull
+    OwnershipChange build(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        List<OwnershipTransfer> result = new ArrayList<>();
+        for (Map.Entry<ClusterNode, Map<ClusterNode, Transfer>> from : transfers.entrySet()) {
+            for (Map.Entry<ClusterNode, Transfer> to : from.getValue().entrySet()) {
+                Transfer transfer = to.getValue();
+                result.add(new OwnershipTransfer(from.getKey(), to.getKey(), transfer.fraction, transfer.ranges));
+            }
+        }
+        return new OwnershipChange(previous, current, result);
+    }
+
+    private Transfer get(ClusterNode from, ClusterNode to) {
+        return transfers
+                .computeIfAbsent(from, node -> new LinkedHashMap<>())
+                .computeIfAbsent(to, node -> new Transfer());
+    }
+
+    private static class Transfer {
+        private double fraction;
+        private List<HashRange> ranges;
+    }
+}
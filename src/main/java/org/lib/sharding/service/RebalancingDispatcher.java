@@ -0,0 +1,100 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the rebalancing of routing table changes on a single thread, off the membership update path.
+ * <p>
+ * Changes are handled in the version order, a change older than the last dispatched one is dropped.
+ * Every change is diffed against the last dispatched table rather than the previous table of the caller,
+ * so tables which have been published without a dispatch (a whole table from the state transfer or
+ * a catch up) are covered by the next change. Changes which come while one is waiting to run supersede it:
+ * they are merged into a single change, so the task sees every key which has moved.
+ */
+class RebalancingDispatcher {
+    private final BiConsumer<RoutingTable, RoutingTable> task;
+    private final ExecutorService executor;
+
+    private final Object lock = new Object();
+    private RoutingTable pendingPrevious;
+    private RoutingTable pendingCurrent;
+    private RoutingTable lastDispatched;
+
+    private final LongAdder superseded = new LongAdder();
+
+    /**
+     * @param task accepts the previous and the current tables
+     */
+    RebalancingDispatcher(@NotNull BiConsumer<RoutingTable, RoutingTable> task, @NotNull ThreadFactory threadFactory) {
+        this.task = task;
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * @param previous the base of the very first change only, later ones are based on the last dispatched table
+     */
+    void dispatch(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        synchronized (lock) {
+            if (lastDispatched != null && !current.isNewerThan(lastDispatched)) {
+                return;
+            }
+            RoutingTable base = lastDispatched != null ? lastDispatched : previous;
+            lastDispatched = current;
+
+            if (pendingCurrent != null) {
+                pendingCurrent = current;
+                superseded.increment();
+                return;
+            }
+            pendingPrevious = base;
+            pendingCurrent = current;
+        }
+        executor.execute(this::run);
+    }
+
+    /**
+     * @return changes which have been merged into a newer one before they run
+     */
+    long getSuperseded() {
+        return superseded.sum();
+    }
+
+    private void run() {
+        RoutingTable previous;
+        RoutingTable current;
+        synchronized (lock) {
+            previous = pendingPrevious;
+            current = pendingCurrent;
+            pendingPrevious = null;
+            pendingCurrent = null;
+        }
+        task.accept(previous, current);
+    }
+}
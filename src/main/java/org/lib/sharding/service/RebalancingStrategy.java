@@ -22,10 +22,22 @@ package org.lib.sharding.service;
 import com.google.inject.ImplementedBy;
 import org.jetbrains.annotations.NotNull;
 import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
 
 import java.util.List;
 
 @ImplementedBy(RebalancingStrategyImpl.class)
 public interface RebalancingStrategy {
     void nodesChanged(@NotNull List<ClusterNode> oldNodes, @NotNull List<ClusterNode> newNodes);
+
+    /**
+     * Invoked instead of {@link #nodesChanged(List, List)} on every node whose routing table has changed,
+     * override it to migrate only the keys which have changed their owner.
+     * <p>
+     * Calls come one by one from a dedicated thread in the version order, after the new table is published.
+     * Changes which arrive while a call is running are merged into the next call.
+     */
+    default void ownershipChanged(@NotNull OwnershipChange change) {
+        nodesChanged(change.getPrevious().getNodes(), change.getCurrent().getNodes());
+    }
 }
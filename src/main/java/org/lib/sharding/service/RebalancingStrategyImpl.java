@@ -21,6 +21,8 @@ package org.lib.sharding.service;
 
 import org.jetbrains.annotations.NotNull;
 import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.OwnershipTransfer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,4 +37,13 @@ public class RebalancingStrategyImpl implements RebalancingStrategy {
     public void nodesChanged(@NotNull List<ClusterNode> oldNodes, @NotNull List<ClusterNode> newNodes) {
         log.info("Old [{}], new [{}]", oldNodes, newNodes);
     }
+
+    @Override
+    public void ownershipChanged(@NotNull OwnershipChange change) {
+        nodesChanged(change.getPrevious().getNodes(), change.getCurrent().getNodes());
+
+        for (OwnershipTransfer transfer : change.getTransfers()) {
+            log.info("Keys [{}] are moved from [{}] to [{}]", transfer.getFraction(), transfer.getFrom(), transfer.getTo());
+        }
+    }
 }
@@ -0,0 +1,172 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+
+import static org.lib.sharding.service.NodeLocators.addressBytes;
+import static org.lib.sharding.service.NodeLocators.addressHash;
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+/**
+ * Node seeds and weights are laid out in primitive arrays, so scoring is a plain loop without allocation.
+ * <p>
+ * Equal weights skip the logarithm, but rank the nodes by the same 53 bit value the weighted score
+ * is computed of, so changing the weight of one node moves keys only to or from that node.
+ */
+class RendezvousNodeLocator implements NodeLocator {
+    private final RoutingTable table;
+    private final long[] seeds;
+    /**
+     * Null if all nodes have the same weight.
+     */
+    private final double[] weights;
+
+    RendezvousNodeLocator(@NotNull RoutingTable table) {
+        this.table = table;
+
+        seeds = new long[table.size()];
+        for (int index = 0; index < seeds.length; index++) {
+            seeds[index] = addressHash(addressBytes(table.getNodes().get(index)), 0);
+        }
+
+        boolean uniform = true;
+        double[] nodeWeights = new double[table.size()];
+        for (int index = 0; index < nodeWeights.length; index++) {
+            nodeWeights[index] = table.getWeight(index);
+            uniform &= nodeWeights[index] == nodeWeights[0];
+        }
+        weights = uniform ? null : nodeWeights;
+    }
+
+    @NotNull
+    @Override
+    public RoutingTable getRoutingTable() {
+        return table;
+    }
+
+    @Override
+    public int getNodeIndex(long hash) {
+        return weights == null ? getUniformNodeIndex(hash) : getWeightedNodeIndex(hash);
+    }
+
+    /**
+     * Nodes ordered by the descending score, every position is a pass over the nodes,
+     * so nothing is allocated. Ties are broken by the lower index.
+     */
+    @Override
+    public int getNodeIndexes(long hash, @NotNull int[] result, int limit) {
+        int count = Math.min(limit, seeds.length);
+        for (int position = 0; position < count; position++) {
+            result[position] = weights == null
+                    ? getUniformNodeIndex(hash, result, position)
+                    : getWeightedNodeIndex(hash, result, position);
+        }
+        return Math.max(count, 0);
+    }
+
+    private int getUniformNodeIndex(long hash) {
+        int best = 0;
+        long bestScore = Long.MIN_VALUE;
+        for (int index = 0; index < seeds.length; index++) {
+            long score = getUniformScore(hash, index);
+            if (score > bestScore) {
+                bestScore = score;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the best node ranked after {@code result[position - 1]}
+     */
+    private int getUniformNodeIndex(long hash, int[] result, int position) {
+        int previous = position > 0 ? result[position - 1] : -1;
+        long previousScore = position > 0 ? getUniformScore(hash, previous) : 0;
+
+        int best = -1;
+        long bestScore = Long.MIN_VALUE;
+        for (int index = 0; index < seeds.length; index++) {
+            long score = getUniformScore(hash, index);
+            if (previous >= 0 && (score > previousScore || score == previousScore && index <= previous)) {
+                continue;
+            }
+            if (best < 0 || score > bestScore) {
+                bestScore = score;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    private int getWeightedNodeIndex(long hash) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int index = 0; index < seeds.length; index++) {
+            double score = getWeightedScore(hash, index);
+            if (score > bestScore) {
+                bestScore = score;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    private int getWeightedNodeIndex(long hash, int[] result, int position) {
+        int previous = position > 0 ? result[position - 1] : -1;
+        double previousScore = position > 0 ? getWeightedScore(hash, previous) : 0;
+
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int index = 0; index < seeds.length; index++) {
+            double score = getWeightedScore(hash, index);
+            if (previous >= 0 && (score > previousScore || score == previousScore && index <= previous)) {
+                continue;
+            }
+            if (best < 0 || score > bestScore) {
+                bestScore = score;
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The weighted score is monotonic in this value when all weights are equal, so both give the same order.
+     */
+    private long getUniformScore(long hash, int index) {
+        return fmix64(hash ^ seeds[index]) >>> 11;
+    }
+
+    /**
+     * Logarithmic method: the score is {@code -weight / ln(u)} where {@code u} is the uniform
+     * (0, 1) value of the node, so a node wins the key with the probability proportional to its weight.
+     */
+    private double getWeightedScore(long hash, int index) {
+        return -weights[index] / Math.log(toUnitInterval(fmix64(hash ^ seeds[index])));
+    }
+
+    private static double toUnitInterval(long value) {
+        return ((value >>> 11) + 0.5) * 0x1.0p-53;
+    }
+}
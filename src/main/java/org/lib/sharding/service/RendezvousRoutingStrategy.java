@@ -0,0 +1,102 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.RoutingTable;
+
+import javax.inject.Singleton;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Highest random weight hashing: every node scores the key and the best score wins.
+ * A lookup is linear in the number of nodes, so it's meant for small clusters, but
+ * any membership change remaps only the keys of the added or removed node.
+ * Keys are spread proportionally to the {@link org.lib.sharding.domain.ClusterNode#getWeight() node weights}.
+ */
+@Singleton
+public class RendezvousRoutingStrategy implements RoutingStrategy {
+
+    @NotNull
+    @Override
+    public NodeLocator createLocator(@NotNull RoutingTable table) {
+        return new RendezvousNodeLocator(table);
+    }
+
+    /**
+     * Keys are spread over the whole ring, so only node pairs are known. The best node of the union
+     * of both tables owns a key with the probability proportional to its weight: a key moves if that
+     * node is an added one, from the best old node, or a removed one, to the best new node.
+     * The fractions are expected values, weight changes of the staying nodes aren't counted.
+     */
+    @NotNull
+    @Override
+    public OwnershipChange getOwnershipChange(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        OwnershipTransfers transfers = new OwnershipTransfers();
+        if (previous.isEmpty() || current.isEmpty()) {
+            return transfers.build(previous, current);
+        }
+
+        List<ClusterNode> before = previous.getNodes();
+        List<ClusterNode> after = current.getNodes();
+        Set<ClusterNode> beforeSet = new HashSet<>(before);
+        Set<ClusterNode> afterSet = new HashSet<>(after);
+
+        double beforeWeight = getTotalWeight(previous);
+        double afterWeight = getTotalWeight(current);
+        double unionWeight = beforeWeight;
+        for (int to = 0; to < after.size(); to++) {
+            if (!beforeSet.contains(after.get(to))) {
+                unionWeight += current.getWeight(to);
+            }
+        }
+
+        for (int from = 0; from < before.size(); from++) {
+            boolean removed = !afterSet.contains(before.get(from));
+            for (int to = 0; to < after.size(); to++) {
+                double fraction = 0;
+                if (!beforeSet.contains(after.get(to))) {
+                    fraction += current.getWeight(to) / unionWeight * previous.getWeight(from) / beforeWeight;
+                }
+                if (removed) {
+                    fraction += previous.getWeight(from) / unionWeight * current.getWeight(to) / afterWeight;
+                }
+                if (fraction > 0) {
+                    transfers.add(before.get(from), after.get(to), fraction);
+                }
+            }
+        }
+
+        return transfers.build(previous, current);
+    }
+
+    private static double getTotalWeight(RoutingTable table) {
+        double total = 0;
+        for (int index = 0; index < table.size(); index++) {
+            total += table.getWeight(index);
+        }
+        return total;
+    }
+}
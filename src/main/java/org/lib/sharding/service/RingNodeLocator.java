@@ -0,0 +1,165 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.lib.sharding.service.NodeLocators.addressBytes;
+import static org.lib.sharding.service.NodeLocators.addressHash;
+import static org.lib.sharding.service.NodeLocators.contains;
+
+/**
+ * Sorted ring of virtual node tokens, a lookup is a binary search over the primitive array.
+ * The number of tokens of a node is proportional to its weight.
+ */
+class RingNodeLocator implements NodeLocator {
+    private final RoutingTable table;
+    private final long[] tokens;
+    private final int[] owners;
+
+    RingNodeLocator(@NotNull RoutingTable table, int virtualNodes) {
+        checkArgument(virtualNodes > 0, "virtual nodes must be positive: %s", virtualNodes);
+
+        this.table = table;
+
+        List<ClusterNode> nodes = table.getNodes();
+
+        int[] counts = new int[nodes.size()];
+        int size = 0;
+        for (int index = 0; index < nodes.size(); index++) {
+            counts[index] = getVirtualNodes(virtualNodes, table.getWeight(index));
+            size += counts[index];
+        }
+
+        long[] unsortedTokens = new long[size];
+        int[] unsortedOwners = new int[size];
+        int position = 0;
+        for (int index = 0; index < nodes.size(); index++) {
+            byte[] address = addressBytes(nodes.get(index));
+            for (int virtualNode = 0; virtualNode < counts[index]; virtualNode++) {
+                unsortedTokens[position] = addressHash(address, virtualNode);
+                unsortedOwners[position] = index;
+                position++;
+            }
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // ties are broken by the address, so the ring doesn't depend on the nodes list order
+        Arrays.sort(order, (left, right) -> {
+            int result = Long.compare(unsortedTokens[left], unsortedTokens[right]);
+            if (result != 0) {
+                return result;
+            }
+            return nodes.get(unsortedOwners[left]).getAddress().compareTo(nodes.get(unsortedOwners[right]).getAddress());
+        });
+
+        tokens = new long[size];
+        owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            tokens[i] = unsortedTokens[order[i]];
+            owners[i] = unsortedOwners[order[i]];
+        }
+    }
+
+    @NotNull
+    @Override
+    public RoutingTable getRoutingTable() {
+        return table;
+    }
+
+    @Override
+    public int getNodeIndex(long hash) {
+        return owners[getTokenIndex(hash)];
+    }
+
+    /**
+     * Replicas are the next distinct owners clockwise.
+     */
+    @Override
+    public int getNodeIndexes(long hash, @NotNull int[] result, int limit) {
+        int count = Math.min(limit, table.size());
+
+        int found = 0;
+        int token = getTokenIndex(hash);
+        for (int step = 0; found < count && step < tokens.length; step++) {
+            int owner = owners[token];
+            if (!contains(result, found, owner)) {
+                result[found++] = owner;
+            }
+            token = token + 1 == tokens.length ? 0 : token + 1;
+        }
+        return found;
+    }
+
+    /**
+     * Walks the arcs between the tokens of both rings, an arc has the same owner in each
+     * ring, so it's either moved entirely or not at all.
+     */
+    void addTransfers(@NotNull RingNodeLocator next, @NotNull OwnershipTransfers transfers) {
+        long[] points = new long[tokens.length + next.tokens.length];
+        System.arraycopy(tokens, 0, points, 0, tokens.length);
+        System.arraycopy(next.tokens, 0, points, tokens.length, next.tokens.length);
+        Arrays.sort(points);
+
+        int size = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (size == 0 || points[size - 1] != points[i]) {
+                points[size++] = points[i];
+            }
+        }
+
+        List<ClusterNode> nodes = table.getNodes();
+        List<ClusterNode> nextNodes = next.table.getNodes();
+        for (int i = 0; i < size; i++) {
+            long start = points[i == 0 ? size - 1 : i - 1];
+            long end = points[i];
+            transfers.add(nodes.get(getNodeIndex(end)), nextNodes.get(next.getNodeIndex(end)), start, end);
+        }
+    }
+
+    /**
+     * @return index of the first token clockwise from the given hash
+     */
+    int getTokenIndex(long hash) {
+        int index = Arrays.binarySearch(tokens, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == tokens.length ? 0 : index;
+    }
+
+    /**
+     * A node of weight 1 gets exactly the configured number of virtual nodes. Counts don't depend
+     * on the other nodes, so a membership change still remaps only the ranges of the changed node.
+     */
+    static int getVirtualNodes(int virtualNodes, double weight) {
+        return (int) Math.max(1, Math.round(virtualNodes * weight));
+    }
+}
@@ -0,0 +1,61 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.configuration.RouterPropertiesConfiguration;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.RoutingTable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Consistent hash ring with a number of virtual nodes per node. Any membership change
+ * remaps only the keys of the ring ranges which changed their owner, whatever the order of the nodes list is.
+ * Keys are spread proportionally to the {@link org.lib.sharding.domain.ClusterNode#getWeight() node weights}.
+ */
+@Singleton
+public class RingRoutingStrategy implements RoutingStrategy {
+
+    @Inject
+    private RouterPropertiesConfiguration configuration;
+
+    @NotNull
+    @Override
+    public NodeLocator createLocator(@NotNull RoutingTable table) {
+        return new RingNodeLocator(table, configuration.getVirtualNodes());
+    }
+
+    /**
+     * Exact hash ranges which have changed their owner.
+     */
+    @NotNull
+    @Override
+    public OwnershipChange getOwnershipChange(@NotNull RoutingTable previous, @NotNull RoutingTable current) {
+        OwnershipTransfers transfers = new OwnershipTransfers();
+        if (!previous.isEmpty() && !current.isEmpty()) {
+            RingNodeLocator before = new RingNodeLocator(previous, configuration.getVirtualNodes());
+            before.addTransfers(new RingNodeLocator(current, configuration.getVirtualNodes()), transfers);
+        }
+        return transfers.build(previous, current);
+    }
+}
@@ -0,0 +1,158 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+/**
+ * Bounded key to node cache for hot keys.
+ * <p>
+ * Entries are tagged with the routing table they were computed for (see {@link #tag(RoutingTable)}): an entry
+ * of another table is a miss, so nothing has to be done when the table changes. Tables of different epochs
+ * don't come in the version order, so any other tag counts as a new table; a router which still uses
+ * the previous table only makes its keys miss until it moves on.
+ * Every stripe is a direct mapped array of immutable entries, a colliding key just replaces the old one.
+ * Neither reads nor writes take a lock. Long keys are stored unboxed.
+ */
+public class RoutingCache {
+    private final AtomicReferenceArray<Entry>[] stripes;
+    private final int stripeMask;
+    private final int slotMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public RoutingCache(int capacity, int concurrencyLevel) {
+        checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+        checkArgument(concurrencyLevel > 0, "concurrency level must be positive: %s", concurrencyLevel);
+
+        int stripesCount = powerOfTwo(concurrencyLevel);
+        int slots = powerOfTwo((capacity + stripesCount - 1) / stripesCount);
+
+        stripes = new AtomicReferenceArray[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new AtomicReferenceArray<>(slots);
+        }
+        stripeMask = stripesCount - 1;
+        slotMask = slots - 1;
+    }
+
+    @Nullable
+    public ClusterNode get(long key, long tag) {
+        long hash = fmix64(key);
+        Entry entry = stripes[(int) hash & stripeMask].get((int) (hash >>> 32) & slotMask);
+
+        ClusterNode node = null;
+        if (entry != null && entry.tag == tag && entry.objectKey == null && entry.key == key) {
+            node = entry.node;
+        }
+        count(node);
+        return node;
+    }
+
+    public void put(long key, long tag, @NotNull ClusterNode node) {
+        long hash = fmix64(key);
+        stripes[(int) hash & stripeMask].lazySet((int) (hash >>> 32) & slotMask, new Entry(tag, key, null, node));
+    }
+
+    @Nullable
+    public ClusterNode get(@NotNull Object key, long tag) {
+        long hash = fmix64(key.hashCode());
+        Entry entry = stripes[(int) hash & stripeMask].get((int) (hash >>> 32) & slotMask);
+
+        ClusterNode node = null;
+        if (entry != null && entry.tag == tag && key.equals(entry.objectKey)) {
+            node = entry.node;
+        }
+        count(node);
+        return node;
+    }
+
+    public void put(@NotNull Object key, long tag, @NotNull ClusterNode node) {
+        long hash = fmix64(key.hashCode());
+        stripes[(int) hash & stripeMask].lazySet((int) (hash >>> 32) & slotMask, new Entry(tag, 0, key, node));
+    }
+
+    /**
+     * @return the tag of the entries computed for the given table, unique for its epoch and version
+     */
+    public static long tag(@NotNull RoutingTable table) {
+        return fmix64(table.getEpoch()) ^ table.getVersion();
+    }
+
+    public int getCapacity() {
+        return stripes.length * stripes[0].length();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitsCount = getHits();
+        long total = hitsCount + getMisses();
+        return total == 0 ? 0 : (double) hitsCount / total;
+    }
+
+    private void count(@Nullable ClusterNode node) {
+        if (node != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    private static int powerOfTwo(int value) {
+        int result = Integer.highestOneBit(value);
+        return result == value ? result : result << 1;
+    }
+
+    /**
+     * A key, long or object, and its node; it's published whole, so a reader never sees a key with another key's node.
+     */
+    private static class Entry {
+        private final long tag;
+        private final long key;
+        private final Object objectKey;
+        private final ClusterNode node;
+
+        private Entry(long tag, long key, @Nullable Object objectKey, @NotNull ClusterNode node) {
+            this.tag = tag;
+            this.key = key;
+            this.objectKey = objectKey;
+            this.node = node;
+        }
+    }
+}
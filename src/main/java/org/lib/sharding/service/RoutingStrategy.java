@@ -0,0 +1,65 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.ImplementedBy;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.RoutingTable;
+
+/**
+ * Algorithm used to spread keys between nodes, bind it to switch the routing of all routers.
+ */
+@ImplementedBy(JumpRoutingStrategy.class)
+public interface RoutingStrategy {
+    /**
+     * @param table non empty routing table
+     */
+    @NotNull
+    NodeLocator createLocator(@NotNull RoutingTable table);
+
+    /**
+     * Locator of the owners of the keys, which {@link #getOwnershipChange(RoutingTable, RoutingTable)}
+     * and the migrations follow. It's the routing one unless the routing serves keys off their owners.
+     *
+     * @param table non empty routing table
+     */
+    @NotNull
+    default NodeLocator createPlacementLocator(@NotNull RoutingTable table) {
+        return createLocator(table);
+    }
+
+    /**
+     * @return true if a key is routed to the same node while the routing table is the same,
+     * the hot keys cache relies on it
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * @param previous routing table before a change, may be empty
+     * @param current  routing table after the change, may be empty
+     * @return keys which have changed their owner, nothing if either table is empty
+     */
+    @NotNull
+    OwnershipChange getOwnershipChange(@NotNull RoutingTable previous, @NotNull RoutingTable current);
+}
@@ -0,0 +1,143 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.configuration.RouterPropertiesConfiguration;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client mode: keeps the local {@link NodeRepository} of a {@link ClientNodeRouter} up to date with the
+ * tables of the cluster members without joining the cluster, so a client causes neither view changes
+ * nor state transfers. Bind {@link RoutingTableSource} to the transport, {@link JGroupsRoutingTableSource}
+ * reaches the members which serve their tables to clients.
+ * <p>
+ * Pushed tables are cached as they come, older ones are dropped. A periodic fetch
+ * ({@code sharding.router.client.refreshPeriod}) catches up with the pushes which have been lost.
+ * A restarted cluster starts a new epoch, its tables replace the cached one whatever their versions are.
+ */
+@Singleton
+public class RoutingTableClient {
+    private static final Logger log = LoggerFactory.getLogger(RoutingTableClient.class);
+
+    @Inject
+    private NodeRepository nodeRepository;
+
+    @Inject
+    private RoutingTableSource source;
+
+    @Inject
+    private RouterPropertiesConfiguration configuration;
+
+    @Inject
+    private ShardingMetrics metrics;
+
+    private AutoCloseable subscription;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Subscribes before the first fetch, so no table published in between is missed.
+     *
+     * @param name name of the client in the MBean names
+     */
+    public synchronized void start(@NotNull String name) {
+        if (subscription != null) {
+            return;
+        }
+
+        try {
+            subscription = source.subscribe((previous, current) -> accept(current));
+        } catch (Exception e) {
+            log.error("Can't subscribe to routing tables", e);
+            throw new RuntimeException(e);
+        }
+
+        refresh();
+
+        if (configuration.getClientRefreshPeriod() > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                            .setDaemon(true)
+                            .setNameFormat("RoutingTableRefresher-%d")
+                            .build()
+            );
+            refresher.scheduleWithFixedDelay(this::refresh,
+                    configuration.getClientRefreshPeriod(), configuration.getClientRefreshPeriod(), TimeUnit.MILLISECONDS);
+        }
+
+        metrics.start(name);
+
+        log.info("Routing table client is started, version [{}]", nodeRepository.getRoutingTable().getVersion());
+    }
+
+    /**
+     * The cached table stays in use.
+     */
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+
+        if (subscription != null) {
+            try {
+                subscription.close();
+            } catch (Exception e) {
+                log.warn("Can't unsubscribe from routing tables", e);
+            }
+            subscription = null;
+        }
+
+        metrics.stop();
+
+        log.debug("Routing table client is stopped, version [{}]", nodeRepository.getRoutingTable().getVersion());
+    }
+
+    /**
+     * Fetches the current table of the members, a failure keeps the cached one.
+     */
+    public void refresh() {
+        try {
+            accept(source.fetch());
+        } catch (Exception e) {
+            log.warn("Can't fetch routing table, cached table [{}] is kept", nodeRepository.getRoutingTable().getStamp(), e);
+        }
+    }
+
+    private void accept(@NotNull RoutingTable table) {
+        if (nodeRepository.setRoutingTable(table)) {
+            log.debug("Routing table [{}] is cached", table.getStamp());
+        } else if (nodeRepository.getRoutingTable().isNewerThan(table)) {
+            log.debug("Stale routing table [{}] is dropped, cached table [{}]",
+                    table.getStamp(), nodeRepository.getRoutingTable().getStamp());
+        }
+    }
+}
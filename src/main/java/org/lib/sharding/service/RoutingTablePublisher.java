@@ -0,0 +1,192 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jgroups.Address;
+import org.jgroups.JChannel;
+import org.jgroups.blocks.MethodCall;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
+import org.jgroups.blocks.RpcDispatcher;
+import org.jgroups.util.ExtendedUUID;
+import org.lib.sharding.configuration.ClusterPropertiesConfiguration;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.jgroups.util.Util.createConcurrentMap;
+
+/**
+ * Member side of {@link JGroupsRoutingTableSource}: joins the clients in a channel of their own
+ * ({@code sharding.cluster.clients.config}), answers their fetches with the table of this member and pushes
+ * them every table it publishes. Clients never join the cluster channel, so they cause no view changes
+ * of the members. The addresses of the members are marked, so clients ask members only and members push
+ * to clients only.
+ * <p>
+ * Runs while the membership service does if {@code sharding.cluster.clients.enabled} is set.
+ */
+@Singleton
+public class RoutingTablePublisher {
+    private static final Logger log = LoggerFactory.getLogger(RoutingTablePublisher.class);
+
+    static final String CLUSTER_NAME = "routing_tables";
+
+    static final Short GET_ROUTING_TABLE = 0x1;
+    static final Short PUSH_ROUTING_TABLE = 0x2;
+
+    private static final String MEMBER = "sharding.member";
+
+    private static final Map<Short, Method> methods = createConcurrentMap(1);
+
+    static {
+        try {
+            methods.put(GET_ROUTING_TABLE, RoutingTablePublisher.class.getMethod("getRoutingTable"));
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Inject
+    private ClusterPropertiesConfiguration configuration;
+
+    private NodeRepository nodeRepository;
+
+    private JChannel channel;
+    private volatile RpcDispatcher dispatcher;
+    private ExecutorService pusher;
+    private RoutingTable pushed;
+
+    @Inject
+    void subscribe(NodeRepository nodeRepository) {
+        this.nodeRepository = nodeRepository;
+        nodeRepository.addListener((previous, current) -> schedulePush());
+    }
+
+    /**
+     * @param name name of the member in the clients channel
+     */
+    public synchronized void start(@NotNull String name) {
+        if (channel != null) {
+            return;
+        }
+
+        checkState(configuration.getClientsConfig() != null, "sharding.cluster.clients.config isn't set");
+
+        try {
+            channel = new JChannel(RoutingTablePublisher.class.getClassLoader().getResourceAsStream(configuration.getClientsConfig()));
+            channel.setDiscardOwnMessages(true);
+            channel.addAddressGenerator(() -> ExtendedUUID.randomUUID(name).put(MEMBER, new byte[0]));
+
+            RpcDispatcher dispatcher = new RpcDispatcher(channel, this);
+            dispatcher.setMethodLookup(methods::get);
+
+            channel.connect(CLUSTER_NAME);
+
+            pusher = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder()
+                            .setDaemon(true)
+                            .setNameFormat("RoutingTablePusher-%d")
+                            .build()
+            );
+            this.dispatcher = dispatcher;
+        } catch (Exception e) {
+            log.error("Can't create clients channel", e);
+            throw new RuntimeException(e);
+        }
+
+        log.info("Routing tables are served to clients by member [{}]", channel.getAddress());
+    }
+
+    public synchronized void stop() {
+        if (channel == null) {
+            return;
+        }
+
+        Address address = channel.getAddress();
+        dispatcher = null;
+        pusher.shutdownNow();
+        pusher = null;
+        channel.close();
+        channel = null;
+
+        log.debug("Routing tables aren't served to clients by member [{}] anymore", address);
+    }
+
+    /**
+     * Answers the fetch of a client.
+     */
+    public RoutingTable getRoutingTable() {
+        return nodeRepository.getRoutingTable();
+    }
+
+    /**
+     * Hands the push over to a thread of its own, so neither the repository writer nor
+     * the RPC handler which has published the table waits for the clients.
+     */
+    private synchronized void schedulePush() {
+        if (pusher != null) {
+            pusher.execute(this::push);
+        }
+    }
+
+    /**
+     * @return true if the address is of a member in the clients channel
+     */
+    static boolean isMember(@NotNull Address address) {
+        return address instanceof ExtendedUUID && ((ExtendedUUID) address).keyExists(MEMBER);
+    }
+
+    /**
+     * Sends the latest table with one multicast which skips the members, without waiting for the clients;
+     * the tables which have come while the previous push was running are skipped.
+     */
+    private void push() {
+        RpcDispatcher dispatcher = this.dispatcher;
+        RoutingTable table = nodeRepository.getRoutingTable();
+        if (dispatcher == null || table == pushed) {
+            return;
+        }
+
+        try {
+            Address[] members = dispatcher.getChannel().getView().getMembers().stream()
+                    .filter(RoutingTablePublisher::isMember)
+                    .toArray(Address[]::new);
+            dispatcher.callRemoteMethods(
+                    null,
+                    new MethodCall(PUSH_ROUTING_TABLE, table),
+                    new RequestOptions(ResponseMode.GET_NONE, 0L).setExclusionList(members));
+            pushed = table;
+        } catch (Exception e) {
+            log.warn("Can't push routing table [{}] to clients", table.getStamp(), e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.RoutingTableListener;
+
+/**
+ * Transport between the cluster members and the {@link RoutingTableClient clients} which aren't members.
+ * A member side serves its {@link org.lib.sharding.repository.NodeRepository} tables, they are
+ * {@link org.jgroups.util.Streamable Streamable}, so any transport can ship their compact binary form.
+ */
+public interface RoutingTableSource {
+    /**
+     * @return the current table of the members
+     */
+    @NotNull
+    RoutingTable fetch() throws Exception;
+
+    /**
+     * Pushes the tables published after the call, a table may come more than once or out of order.
+     *
+     * @return closing it stops the pushes
+     */
+    @NotNull
+    AutoCloseable subscribe(@NotNull RoutingTableListener listener) throws Exception;
+}
@@ -0,0 +1,140 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Tells whether the routing table is stable: it isn't empty and no membership change is in progress.
+ * A transition starts with a view change and ends when this node gets the new table, or after a timeout
+ * if the table never comes. Waiters are parked as futures, no thread waits for the table.
+ * <p>
+ * The futures are completed on a thread of the tracker, so the waiters never run under the lock of
+ * the repository writer nor delay the reply of the RPC handler which has published the table.
+ */
+@Singleton
+public class RoutingTableTracker {
+    private NodeRepository nodeRepository;
+
+    private final Object lock = new Object();
+    private long transitions;
+    private volatile boolean inTransition;
+    private CompletableFuture<RoutingTable> stable;
+    private ScheduledExecutorService timer;
+
+    private final ExecutorService completer = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("RoutingTableWaiters-%d")
+                    .build()
+    );
+
+    @Inject
+    void subscribe(NodeRepository nodeRepository) {
+        this.nodeRepository = nodeRepository;
+        nodeRepository.addListener((previous, current) -> settle());
+    }
+
+    public boolean isStable() {
+        return !inTransition && !nodeRepository.getRoutingTable().isEmpty();
+    }
+
+    /**
+     * @return completed with the current table if it's stable, otherwise when it settles;
+     * dependent stages run on a thread of the tracker then
+     */
+    @NotNull
+    public CompletableFuture<RoutingTable> awaitStable() {
+        synchronized (lock) {
+            if (isStable()) {
+                return CompletableFuture.completedFuture(nodeRepository.getRoutingTable());
+            }
+            if (stable == null) {
+                stable = new CompletableFuture<>();
+            }
+            // a caller can't complete the shared future for the others
+            return stable.thenApply(Function.identity());
+        }
+    }
+
+    /**
+     * @param timeout milliseconds after which the transition ends anyway
+     */
+    public void beginTransition(long timeout) {
+        long transition;
+        synchronized (lock) {
+            transition = ++transitions;
+            inTransition = true;
+            if (timer == null) {
+                timer = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setDaemon(true)
+                                .setNameFormat("TransitionTimer-%d")
+                                .build()
+                );
+            }
+        }
+        timer.schedule(() -> endTransition(transition), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public void endTransition() {
+        synchronized (lock) {
+            inTransition = false;
+        }
+        settle();
+    }
+
+    private void endTransition(long transition) {
+        synchronized (lock) {
+            if (transition != transitions || !inTransition) {
+                return;
+            }
+            inTransition = false;
+        }
+        settle();
+    }
+
+    private void settle() {
+        CompletableFuture<RoutingTable> settled;
+        RoutingTable table;
+        synchronized (lock) {
+            if (stable == null || !isStable()) {
+                return;
+            }
+            settled = stable;
+            stable = null;
+            table = nodeRepository.getRoutingTable();
+        }
+        completer.execute(() -> settled.complete(table));
+    }
+}
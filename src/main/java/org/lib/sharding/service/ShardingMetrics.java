@@ -0,0 +1,328 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.lib.sharding.configuration.MetricsPropertiesConfiguration;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.jgroups.util.Util.getMBeanServer;
+
+/**
+ * Routing and membership metrics of this node. Everything is recorded without locks,
+ * the routing part is off unless {@code sharding.metrics.routing} is set.
+ * <p>
+ * The membership service or the routing table client {@link #start(String) starts} the metrics:
+ * they are registered in JMX and reported from then until {@link #stop()}.
+ */
+@Singleton
+public class ShardingMetrics implements ShardingMetricsMBean {
+    private static final Logger log = LoggerFactory.getLogger(ShardingMetrics.class);
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Inject
+    private NodeRepository nodeRepository;
+
+    @Inject
+    private SkewAnalyzer skewAnalyzer;
+
+    @Inject
+    private MetricsPropertiesConfiguration configuration;
+
+    @Inject
+    private MetricsReporter reporter;
+
+    /**
+     * Set by the started membership service, a client only router has none.
+     */
+    private volatile ClusterMembershipService membershipService;
+
+    private final long startTime = System.nanoTime();
+
+    private final LatencyHistogram routingLatency = new LatencyHistogram();
+    private final ConcurrentMap<ClusterNode, LongAdder> keysPerNode = new ConcurrentHashMap<>();
+
+    private final AtomicLong viewChangedTime = new AtomicLong();
+    private final LatencyHistogram convergenceLatency = new LatencyHistogram();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LongAdder rpcTimeouts = new LongAdder();
+
+    private boolean routingEnabled;
+
+    private final List<ObjectName> mbeanNames = new ArrayList<>();
+    private ScheduledExecutorService reportExecutor;
+
+    /**
+     * Nodes which have left the cluster are forgotten.
+     */
+    @Inject
+    void configure() {
+        routingEnabled = configuration.isRouting();
+
+        nodeRepository.addListener((previous, current) -> keysPerNode.keySet().retainAll(ImmutableSet.copyOf(current.getNodes())));
+    }
+
+    /**
+     * Registers the MBeans and starts the reporter, does nothing if the metrics are started already.
+     *
+     * @param name name of the node in the MBean names
+     */
+    public synchronized void start(@NotNull String name) {
+        if (!mbeanNames.isEmpty() || reportExecutor != null) {
+            return;
+        }
+
+        registerMBean(this, "ShardingMetrics", name);
+        if (skewAnalyzer.isEnabled()) {
+            registerMBean(skewAnalyzer, "SkewAnalyzer", name);
+        }
+
+        if (configuration.getReportPeriod() > 0) {
+            reportExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder()
+                            .setDaemon(true)
+                            .setNameFormat("MetricsReporter-%d")
+                            .build()
+            );
+            reportExecutor.scheduleAtFixedRate(() -> {
+                try {
+                    reporter.report(this);
+                } catch (Exception e) {
+                    log.error("Can't report metrics", e);
+                }
+            }, configuration.getReportPeriod(), configuration.getReportPeriod(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (reportExecutor != null) {
+            reportExecutor.shutdownNow();
+            reportExecutor = null;
+        }
+
+        for (ObjectName mbeanName : mbeanNames) {
+            try {
+                getMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                log.warn("Can't unregister MBean [{}]", mbeanName, e);
+            }
+        }
+        mbeanNames.clear();
+    }
+
+    void setMembershipService(@Nullable ClusterMembershipService membershipService) {
+        this.membershipService = membershipService;
+    }
+
+    public boolean isRoutingEnabled() {
+        return routingEnabled;
+    }
+
+    /**
+     * @param nanos time spent to find the node
+     */
+    public void routed(@NotNull ClusterNode node, long nanos) {
+        routingLatency.record(nanos);
+
+        LongAdder keys = keysPerNode.get(node);
+        if (keys == null) {
+            keys = keysPerNode.computeIfAbsent(node, key -> new LongAdder());
+        }
+        keys.increment();
+    }
+
+    /**
+     * Starts the convergence clock, the first view of a burst wins.
+     */
+    public void viewChanged() {
+        viewChangedTime.compareAndSet(0, System.nanoTime());
+    }
+
+    /**
+     * Stops the convergence clock when this node gets the routing table of the changed view.
+     */
+    public void converged() {
+        long start = viewChangedTime.getAndSet(0);
+        if (start != 0) {
+            convergenceLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    public void lockAcquired(long nanos) {
+        lockWait.record(nanos);
+    }
+
+    public void rpcTimedOut(int calls) {
+        rpcTimeouts.add(calls);
+    }
+
+    @NotNull
+    public LatencyHistogram getRoutingLatency() {
+        return routingLatency;
+    }
+
+    @NotNull
+    public LatencyHistogram getConvergenceLatency() {
+        return convergenceLatency;
+    }
+
+    @NotNull
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    @Override
+    public long getRoutingCount() {
+        return routingLatency.getCount();
+    }
+
+    @Override
+    public double getRoutingRate() {
+        double seconds = (System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds > 0 ? routingLatency.getCount() / seconds : 0;
+    }
+
+    @Override
+    public double getRoutingLatencyMeanNanos() {
+        return routingLatency.getMean();
+    }
+
+    @Override
+    public long getRoutingLatencyP50Nanos() {
+        return routingLatency.getPercentile(50);
+    }
+
+    @Override
+    public long getRoutingLatencyP99Nanos() {
+        return routingLatency.getPercentile(99);
+    }
+
+    @Override
+    public long getRoutingLatencyP999Nanos() {
+        return routingLatency.getPercentile(99.9);
+    }
+
+    @Override
+    public long getRoutingLatencyMaxNanos() {
+        return routingLatency.getMax();
+    }
+
+    @Override
+    public Map<String, Long> getKeysPerNode() {
+        ImmutableMap.Builder<String, Long> result = ImmutableMap.builder();
+        for (Map.Entry<ClusterNode, LongAdder> entry : keysPerNode.entrySet()) {
+            result.put(String.valueOf(entry.getKey().getAddress()), entry.getValue().sum());
+        }
+        return result.build();
+    }
+
+    @Override
+    public long getConvergenceCount() {
+        return convergenceLatency.getCount();
+    }
+
+    @Override
+    public double getConvergenceLatencyMeanMillis() {
+        return convergenceLatency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getConvergenceLatencyP99Millis() {
+        return TimeUnit.NANOSECONDS.toMillis(convergenceLatency.getPercentile(99));
+    }
+
+    @Override
+    public long getConvergenceLatencyMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(convergenceLatency.getMax());
+    }
+
+    @Override
+    public long getRpcTimeouts() {
+        return rpcTimeouts.sum();
+    }
+
+    @Override
+    public double getLockWaitMeanMillis() {
+        return lockWait.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getLockWaitMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lockWait.getMax());
+    }
+
+    @Override
+    public long getRoutingTableVersion() {
+        return nodeRepository.getRoutingTable().getVersion();
+    }
+
+    @Override
+    public long getCoalescedUpdates() {
+        ClusterMembershipService service = membershipService;
+        return service != null ? service.getCoalescedUpdates() : 0;
+    }
+
+    @Override
+    public long getSupersededRebalances() {
+        ClusterMembershipService service = membershipService;
+        return service != null ? service.getSupersededRebalances() : 0;
+    }
+
+    /**
+     * Replaces an MBean left by a node of the same name which hasn't been stopped,
+     * metrics are never a reason to fail the start.
+     */
+    private void registerMBean(Object mbean, String type, String name) {
+        try {
+            ObjectName mbeanName = new ObjectName("org.lib.sharding:type=" + type + ",name=" + ObjectName.quote(name));
+            if (getMBeanServer().isRegistered(mbeanName)) {
+                getMBeanServer().unregisterMBean(mbeanName);
+            }
+            getMBeanServer().registerMBean(mbean, mbeanName);
+            mbeanNames.add(mbeanName);
+        } catch (Exception e) {
+            log.warn("Can't register MBean [{}] of node [{}]", type, name, e);
+        }
+    }
+}
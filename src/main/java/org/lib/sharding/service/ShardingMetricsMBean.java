@@ -0,0 +1,77 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+/**
+ * Read-only view of {@link ShardingMetrics}, registered in JMX by {@link ShardingMetrics#start(String)}.
+ * Routing values are zero unless {@code sharding.metrics.routing} is enabled.
+ */
+public interface ShardingMetricsMBean {
+    long getRoutingCount();
+
+    /**
+     * @return routing calls per second since the start
+     */
+    double getRoutingRate();
+
+    double getRoutingLatencyMeanNanos();
+
+    long getRoutingLatencyP50Nanos();
+
+    long getRoutingLatencyP99Nanos();
+
+    long getRoutingLatencyP999Nanos();
+
+    long getRoutingLatencyMaxNanos();
+
+    /**
+     * @return routed keys by node address
+     */
+    Map<String, Long> getKeysPerNode();
+
+    /**
+     * @return view changes which have been followed by a new routing table on this node
+     */
+    long getConvergenceCount();
+
+    double getConvergenceLatencyMeanMillis();
+
+    long getConvergenceLatencyP99Millis();
+
+    long getConvergenceLatencyMaxMillis();
+
+    /**
+     * @return remote calls which haven't been answered in time
+     */
+    long getRpcTimeouts();
+
+    double getLockWaitMeanMillis();
+
+    long getLockWaitMaxMillis();
+
+    long getRoutingTableVersion();
+
+    long getCoalescedUpdates();
+
+    long getSupersededRebalances();
+}
@@ -0,0 +1,330 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.configuration.MetricsPropertiesConfiguration;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.util.CountMinSketch;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Samples the routed keys to show how even the load is: per node and per hash range counts,
+ * and the heavy hitter keys found with a count-min sketch. Off unless
+ * {@code sharding.metrics.skew.sampleRate} is set; a key which isn't sampled costs one random number.
+ * <p>
+ * Samples are counted in fixed windows of {@code sharding.metrics.skew.window} milliseconds, the reports
+ * cover the current window and the previous one, so a hot spot which has cooled down is gone after two windows.
+ */
+@Singleton
+public class SkewAnalyzer implements SkewAnalyzerMBean {
+    private static final int BUCKET_BITS = 6;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+
+    @Inject
+    private NodeRepository nodeRepository;
+
+    @Inject
+    private KeyHasher keyHasher;
+
+    private double sampleRate;
+    private int topKeys;
+    private long windowNanos;
+
+    private volatile Window current = new Window(System.nanoTime());
+    private volatile Window previous = new Window(current.start);
+
+    /**
+     * Nodes which have left the cluster are forgotten.
+     */
+    @Inject
+    void configure(MetricsPropertiesConfiguration configuration) {
+        sampleRate = configuration.getSkewSampleRate();
+        topKeys = configuration.getSkewTopKeys();
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getSkewWindow());
+
+        nodeRepository.addListener((oldTable, table) -> {
+            ImmutableSet<ClusterNode> nodes = ImmutableSet.copyOf(table.getNodes());
+            current.nodes.keySet().retainAll(nodes);
+            previous.nodes.keySet().retainAll(nodes);
+        });
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * Primitive path of {@link #sample(Object, ClusterNode)}, the key is boxed only if it's sampled.
+     */
+    public void sample(long key, @NotNull ClusterNode node) {
+        if (isSampled()) {
+            getWindow().record(key, keyHasher.hashLong(key), node);
+        }
+    }
+
+    public void sample(@NotNull Object key, @NotNull ClusterNode node) {
+        if (isSampled()) {
+            getWindow().record(key, keyHasher.hashKey(key), node);
+        }
+    }
+
+    @Override
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public long getWindowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(windowNanos);
+    }
+
+    @Override
+    public long getSampledRequests() {
+        Window window = getWindow();
+        return previous.sampled.sum() + window.sampled.sum();
+    }
+
+    @Override
+    public double getNodeImbalance() {
+        Map<ClusterNode, Long> samples = getSamples();
+        RoutingTable table = nodeRepository.getRoutingTable();
+        double totalWeight = 0;
+        long total = 0;
+        for (int i = 0; i < table.size(); i++) {
+            totalWeight += table.getWeight(i);
+            total += samples.getOrDefault(table.getNodes().get(i), 0L);
+        }
+        if (total == 0 || totalWeight <= 0) {
+            return 0;
+        }
+
+        double max = 0;
+        for (int i = 0; i < table.size(); i++) {
+            double expected = total * table.getWeight(i) / totalWeight;
+            if (expected > 0) {
+                max = Math.max(max, samples.getOrDefault(table.getNodes().get(i), 0L) / expected);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public double getBucketImbalance() {
+        long[] buckets = getBuckets();
+        long total = 0;
+        long max = 0;
+        for (long count : buckets) {
+            total += count;
+            max = Math.max(max, count);
+        }
+        return total == 0 ? 0 : max * (double) buckets.length / total;
+    }
+
+    @Override
+    public String getHottestNode() {
+        Map<ClusterNode, Long> samples = getSamples();
+        RoutingTable table = nodeRepository.getRoutingTable();
+        ClusterNode hottest = null;
+        double hottestLoad = 0;
+        for (int i = 0; i < table.size(); i++) {
+            ClusterNode node = table.getNodes().get(i);
+            double load = samples.getOrDefault(node, 0L) / Math.max(table.getWeight(i), Double.MIN_VALUE);
+            if (load > hottestLoad) {
+                hottest = node;
+                hottestLoad = load;
+            }
+        }
+        return hottest != null ? String.valueOf(hottest.getAddress()) : null;
+    }
+
+    @Override
+    public Map<String, Long> getSamplesPerNode() {
+        ImmutableMap.Builder<String, Long> result = ImmutableMap.builder();
+        for (Map.Entry<ClusterNode, Long> entry : getSamples().entrySet()) {
+            result.put(String.valueOf(entry.getKey().getAddress()), entry.getValue());
+        }
+        return result.build();
+    }
+
+    @Override
+    public long[] getSamplesPerBucket() {
+        // hashes are signed, so the buckets of the negative ones go first
+        long[] buckets = getBuckets();
+        long[] result = new long[buckets.length];
+        int half = buckets.length / 2;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buckets[(i + half) % buckets.length];
+        }
+        return result;
+    }
+
+    /**
+     * The estimates of a key are summed over the windows where it's among the top keys.
+     */
+    @Override
+    public Map<String, Long> getHeavyHitters() {
+        Window window = getWindow();
+        Map<Object, Long> estimates = new HashMap<>(previous.heavyHitters);
+        window.heavyHitters.forEach((key, estimate) -> estimates.merge(key, estimate, Long::sum));
+
+        List<Map.Entry<Object, Long>> entries = new ArrayList<>(estimates.entrySet());
+        entries.sort((left, right) -> Long.compare(right.getValue(), left.getValue()));
+
+        ImmutableMap.Builder<String, Long> result = ImmutableMap.builder();
+        for (Map.Entry<Object, Long> entry : entries.subList(0, Math.min(entries.size(), topKeys))) {
+            result.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return result.build();
+    }
+
+    @Override
+    public synchronized void reset() {
+        long now = System.nanoTime();
+        previous = new Window(now);
+        current = new Window(now);
+    }
+
+    private boolean isSampled() {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * @return the current window, a new one if its time has come
+     */
+    private Window getWindow() {
+        Window window = current;
+        long now = System.nanoTime();
+        if (now - window.start < windowNanos) {
+            return window;
+        }
+
+        synchronized (this) {
+            window = current;
+            if (now - window.start >= windowNanos) {
+                // a window without samples has passed in between
+                previous = now - window.start < 2 * windowNanos ? window : new Window(now);
+                current = window = new Window(now);
+            }
+            return window;
+        }
+    }
+
+    private Map<ClusterNode, Long> getSamples() {
+        Window window = getWindow();
+        Map<ClusterNode, Long> result = new HashMap<>();
+        previous.nodes.forEach((node, samples) -> result.merge(node, samples.sum(), Long::sum));
+        window.nodes.forEach((node, samples) -> result.merge(node, samples.sum(), Long::sum));
+        return result;
+    }
+
+    private long[] getBuckets() {
+        Window window = getWindow();
+        long[] result = new long[1 << BUCKET_BITS];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = previous.buckets.get(i) + window.buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Samples of one window, it's dropped as a whole when its time is over.
+     */
+    private final class Window {
+        private final long start;
+
+        private final LongAdder sampled = new LongAdder();
+        private final ConcurrentMap<ClusterNode, LongAdder> nodes = new ConcurrentHashMap<>();
+        private final AtomicLongArray buckets = new AtomicLongArray(1 << BUCKET_BITS);
+
+        private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        private final ConcurrentMap<Object, Long> heavyHitters = new ConcurrentHashMap<>();
+
+        /**
+         * The smallest estimate among the kept heavy hitters once there are enough of them.
+         */
+        private volatile long heavyHitterThreshold;
+
+        private Window(long start) {
+            this.start = start;
+        }
+
+        private void record(Object key, long hash, ClusterNode node) {
+            sampled.increment();
+            buckets.incrementAndGet((int) (hash >>> (Long.SIZE - BUCKET_BITS)));
+
+            LongAdder samples = nodes.get(node);
+            if (samples == null) {
+                samples = nodes.computeIfAbsent(node, ignored -> new LongAdder());
+            }
+            samples.increment();
+
+            long estimate = sketch.add(hash, 1);
+            if (estimate > heavyHitterThreshold || heavyHitters.containsKey(key)) {
+                offerHeavyHitter(key, estimate);
+            }
+        }
+
+        /**
+         * Keeps the top keys approximately: concurrent offers may evict each other's candidates,
+         * a key which stays hot gets back with its next sample.
+         */
+        private void offerHeavyHitter(Object key, long estimate) {
+            heavyHitters.put(key, estimate);
+            if (heavyHitters.size() <= topKeys) {
+                return;
+            }
+
+            Map.Entry<Object, Long> coldest = null;
+            for (Map.Entry<Object, Long> entry : heavyHitters.entrySet()) {
+                if (coldest == null || entry.getValue() < coldest.getValue()) {
+                    coldest = entry;
+                }
+            }
+            if (coldest != null) {
+                heavyHitters.remove(coldest.getKey(), coldest.getValue());
+            }
+
+            long threshold = Long.MAX_VALUE;
+            for (Long value : heavyHitters.values()) {
+                threshold = Math.min(threshold, value);
+            }
+            heavyHitterThreshold = threshold == Long.MAX_VALUE ? 0 : threshold;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+/**
+ * Read-only view of {@link SkewAnalyzer}, registered in JMX by {@link ShardingMetrics#start(String)}.
+ * All counts are of the sampled requests of the current and the previous window, divide them
+ * by the sample rate to get the requests.
+ */
+public interface SkewAnalyzerMBean {
+    double getSampleRate();
+
+    long getWindowMillis();
+
+    long getSampledRequests();
+
+    /**
+     * @return the largest node load over the load expected from its weight, 1.0 is a perfect spread
+     */
+    double getNodeImbalance();
+
+    /**
+     * @return the largest hash bucket load over the mean one, it shows how even the key hashes are
+     * whatever the nodes are
+     */
+    double getBucketImbalance();
+
+    /**
+     * @return address of the node with the largest load for its weight, null if nothing is sampled
+     */
+    String getHottestNode();
+
+    Map<String, Long> getSamplesPerNode();
+
+    /**
+     * @return samples by equal hash ranges, the first one starts at the smallest hash
+     */
+    long[] getSamplesPerBucket();
+
+    /**
+     * @return the hottest keys with their estimated samples, hottest first
+     */
+    Map<String, Long> getHeavyHitters();
+
+    /**
+     * Drops the samples of both windows.
+     */
+    void reset();
+}
@@ -0,0 +1,43 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+
+@Singleton
+public class Slf4jMetricsReporter implements MetricsReporter {
+    private static final Logger log = LoggerFactory.getLogger(Slf4jMetricsReporter.class);
+
+    @Override
+    public void report(@NotNull ShardingMetricsMBean metrics) {
+        log.info("Routing: count [{}], rate [{}], latency mean [{}], p99 [{}], max [{}] ns, keys per node [{}]",
+                metrics.getRoutingCount(), metrics.getRoutingRate(), metrics.getRoutingLatencyMeanNanos(),
+                metrics.getRoutingLatencyP99Nanos(), metrics.getRoutingLatencyMaxNanos(), metrics.getKeysPerNode());
+        log.info("Membership: version [{}], convergence mean [{}], p99 [{}] ms, rpc timeouts [{}], lock wait mean [{}], max [{}] ms, coalesced [{}], superseded [{}]",
+                metrics.getRoutingTableVersion(), metrics.getConvergenceLatencyMeanMillis(), metrics.getConvergenceLatencyP99Millis(),
+                metrics.getRpcTimeouts(), metrics.getLockWaitMeanMillis(), metrics.getLockWaitMaxMillis(),
+                metrics.getCoalescedUpdates(), metrics.getSupersededRebalances());
+    }
+}
@@ -0,0 +1,62 @@
+package org.lib.sharding.util;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+public class ConsistentHashing {
+    private ConsistentHashing() {
+    }
+
+    /**
+     * Same buckets as {@link com.google.common.hash.Hashing#consistentHash(long, int)},
+     * but the generator state is kept on the stack, so nothing is allocated.
+     */
+    public static int consistentHash(long input, int buckets) {
+        checkArgument(buckets > 0, "buckets must be positive: %s", buckets);
+
+        long state = input;
+        int candidate = 0;
+        int next;
+        while (true) {
+            state = 2862933555777941757L * state + 1;
+            double nextDouble = ((double) ((int) (state >>> 33) + 1)) / (0x1.0p31);
+
+            next = (int) ((candidate + 1) / nextDouble);
+            if (next >= 0 && next < buckets) {
+                candidate = next;
+            } else {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * Murmur3 64-bit finalizer, every input bit affects every output bit.
+     */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
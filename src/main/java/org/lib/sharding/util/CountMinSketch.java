@@ -0,0 +1,79 @@
+package org.lib.sharding.util;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.lib.sharding.util.ConsistentHashing.fmix64;
+
+/**
+ * Lock-free count-min sketch over 64-bit hashes. An estimate is never below the real count
+ * and exceeds it by at most {@code e * total / width} with probability {@code 1 - exp(-depth)}.
+ */
+public class CountMinSketch {
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counts;
+
+    /**
+     * @param width counters per row, a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        checkArgument(depth > 0, "depth must be positive: %s", depth);
+        checkArgument(width > 0 && Integer.bitCount(width) == 1, "width must be a power of two: %s", width);
+
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counts = new AtomicLongArray(depth * width);
+    }
+
+    /**
+     * @return the estimate after the addition
+     */
+    public long add(long hash, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.addAndGet(index(row, hash), count));
+        }
+        return estimate;
+    }
+
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private int index(int row, long hash) {
+        return row * (mask + 1) + (int) (fmix64(hash + (row + 1) * SEED) & mask);
+    }
+}
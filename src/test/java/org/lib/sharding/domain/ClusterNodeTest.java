@@ -0,0 +1,93 @@
+package org.lib.sharding.domain;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import org.jgroups.util.Util;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class ClusterNodeTest {
+
+    @Test
+    public void typedPropertiesAreStreamed() throws Exception {
+        ClusterNode node = new ClusterNode(randomUUID());
+        node.getProperties().put("string", "value");
+        node.getProperties().put("int", -42);
+        node.getProperties().put("long", Long.MAX_VALUE);
+        node.getProperties().put(ClusterNode.WEIGHT, 2.5);
+        node.getProperties().put("boolean", true);
+        node.getProperties().put("null", null);
+        node.getProperties().put("other", new ArrayList<>(ImmutableList.of("a", "b")));
+
+        byte[] bytes = Util.streamableToByteBuffer(node);
+        assertEquals(bytes.length, node.size());
+
+        ClusterNode copy = new ClusterNode();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+        assertEquals(copy, node);
+        assertEquals(copy.getProperties(), node.getProperties());
+        assertEquals(copy.getWeight(), 2.5);
+    }
+
+    @Test
+    public void routingTableIsStreamed() throws Exception {
+        ClusterNode node1 = new ClusterNode(randomUUID());
+        ClusterNode node2 = new ClusterNode(randomUUID());
+        node2.getProperties().put(ClusterNode.WEIGHT, 3.0);
+        RoutingTable table = new RoutingTable(1445000000000L, 7, ImmutableList.of(node1, node2));
+
+        RoutingTable copy = (RoutingTable) Util.objectFromByteBuffer(Util.objectToByteBuffer(table));
+        assertEquals(copy, table);
+        assertEquals(copy.getStamp(), table.getStamp());
+        assertEquals(copy.getWeight(1), 3.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deltasAreSerializedInLists() throws Exception {
+        ClusterNode added = new ClusterNode(randomUUID());
+        added.getProperties().put("name", "added");
+        ClusterNode removed = new ClusterNode(null);
+        RoutingTableStamp base = new RoutingTableStamp(1445000000000L, 3, 0x5eedL);
+        RoutingTableDelta delta = new RoutingTableDelta(base, 4, ImmutableList.of(added), ImmutableList.of(removed));
+        assertEquals(Util.streamableToByteBuffer(delta).length, delta.size());
+        assertEquals(Util.streamableToByteBuffer(RoutingTable.EMPTY.getStamp()).length, RoutingTable.EMPTY.getStamp().size());
+
+        List<RoutingTableDelta> copy = (List<RoutingTableDelta>) Util.objectFromByteBuffer(Util.objectToByteBuffer(ImmutableList.of(delta)));
+
+        assertEquals(copy.size(), 1);
+        assertEquals(copy.get(0).getBase(), base);
+        assertEquals(copy.get(0).getFromVersion(), 3);
+        assertEquals(copy.get(0).getToVersion(), 4);
+        assertEquals(copy.get(0).getAdded(), ImmutableList.of(added));
+        assertEquals(copy.get(0).getAdded().get(0).getProperties().get("name"), "added");
+        assertNull(copy.get(0).getRemoved().get(0).getAddress());
+    }
+}
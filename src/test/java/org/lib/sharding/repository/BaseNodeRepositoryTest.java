@@ -0,0 +1,257 @@
+package org.lib.sharding.repository;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.domain.RoutingTableDelta;
+import org.lib.sharding.domain.RoutingTableStamp;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Contract every repository keeps, including the nodes order which must be the same on all nodes.
+ */
+public abstract class BaseNodeRepositoryTest {
+    private final ClusterNode node1 = new ClusterNode(randomUUID());
+    private final ClusterNode node2 = new ClusterNode(randomUUID());
+    private final ClusterNode node3 = new ClusterNode(randomUUID());
+    private final ClusterNode node4 = new ClusterNode(randomUUID());
+
+    protected abstract NodeRepository createRepository();
+
+    @Test
+    public void readsDoNotCopy() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2));
+
+        assertSame(repository.getNodes(), repository.getNodes());
+        assertSame(repository.getRoutingTable(), repository.getRoutingTable());
+        assertEquals(repository.size(), 2);
+    }
+
+    @Test
+    public void listenersGetEveryPublishedTable() {
+        NodeRepository repository = createRepository();
+        List<long[]> versions = new ArrayList<>();
+        repository.addListener((previous, current) -> versions.add(new long[]{previous.getVersion(), current.getVersion()}));
+        repository.addListener((previous, current) -> {
+            throw new IllegalStateException("a failing listener");
+        });
+
+        repository.setNodes(ImmutableList.of(node1));
+        repository.add(node2);
+        RoutingTableChange change = repository.sync(ImmutableSet.of(node1, node3), node1);
+        repository.remove(node1);
+        repository.remove(node1);
+        assertTrue(repository.apply(new RoutingTableDelta(repository.getRoutingTable(), ImmutableList.of(node4), ImmutableList.of())));
+        assertFalse(repository.setRoutingTable(new RoutingTable(5, ImmutableList.of(node1))));
+        assertTrue(repository.setRoutingTable(new RoutingTable(7, ImmutableList.of(node1))));
+
+        assertEquals(change.getCurrent().getVersion(), 3);
+        assertEquals(versions.size(), 6);
+        long[][] expected = {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 7}};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(versions.get(i), expected[i]);
+        }
+    }
+
+    @Test
+    public void everyChangePublishesNewVersion() {
+        NodeRepository repository = createRepository();
+        assertEquals(repository.getRoutingTable(), RoutingTable.EMPTY);
+
+        repository.add(node1);
+        RoutingTable first = repository.getRoutingTable();
+        assertEquals(first.getVersion(), 1);
+
+        repository.add(node2);
+        assertEquals(repository.getRoutingTable().getVersion(), 2);
+        assertEquals(first.getNodes(), ImmutableList.of(node1));
+
+        repository.sync(ImmutableSet.of(node2, node3, node4), node2);
+        assertEquals(repository.getRoutingTable().getVersion(), 3);
+        assertEquals(ImmutableSet.copyOf(repository.getNodes()), ImmutableSet.of(node2, node3, node4));
+    }
+
+    @Test
+    public void staleRoutingTableIsDropped() {
+        NodeRepository repository = createRepository();
+
+        RoutingTable table = new RoutingTable(5, ImmutableList.of(node1, node2));
+        assertTrue(repository.setRoutingTable(table));
+        assertSame(repository.getRoutingTable(), table);
+
+        assertFalse(repository.setRoutingTable(new RoutingTable(5, ImmutableList.of(node1))));
+        assertFalse(repository.setRoutingTable(new RoutingTable(4, ImmutableList.of(node3))));
+        assertSame(repository.getRoutingTable(), table);
+
+        repository.add(node3);
+        assertEquals(repository.getRoutingTable().getVersion(), 6);
+    }
+
+    @Test
+    public void removeMovesLastNodeInPlace() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2, node3, node4));
+
+        repository.remove(node2);
+
+        List<ClusterNode> nodes = repository.getNodes();
+        assertEquals(nodes, ImmutableList.of(node1, node4, node3));
+    }
+
+    @Test
+    public void removeUnknownNode() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1));
+        long version = repository.getRoutingTable().getVersion();
+
+        repository.remove(node2);
+
+        assertEquals(repository.getRoutingTable().getVersion(), version);
+        assertTrue(repository.getNodes().contains(node1));
+    }
+
+    @Test
+    public void deltaReproducesSyncedTable() {
+        NodeRepository leader = createRepository();
+        NodeRepository follower = createRepository();
+        leader.setNodes(ImmutableList.of(node1, node2, node3));
+        follower.setRoutingTable(leader.getRoutingTable());
+
+        RoutingTableDelta delta = leader.sync(ImmutableSet.of(node1, node3, node4), node1).getDelta();
+        assertEquals(delta.getFromVersion(), 1);
+        assertEquals(delta.getToVersion(), 2);
+        assertEquals(delta.getAdded(), ImmutableList.of(node4));
+        assertEquals(delta.getRemoved(), ImmutableList.of(node2));
+
+        assertTrue(follower.apply(delta));
+        assertEquals(follower.getRoutingTable(), leader.getRoutingTable());
+    }
+
+    @Test
+    public void deltaOfAnotherVersionIsNotApplied() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2));
+        RoutingTable table = repository.getRoutingTable();
+
+        long fingerprint = table.getStamp().getFingerprint();
+        assertFalse(repository.apply(new RoutingTableDelta(new RoutingTableStamp(0, 2, fingerprint), 3, ImmutableList.of(node3), ImmutableList.of())));
+        assertFalse(repository.apply(new RoutingTableDelta(new RoutingTableStamp(0, 0, fingerprint), 1, ImmutableList.of(node3), ImmutableList.of())));
+        assertSame(repository.getRoutingTable(), table);
+    }
+
+    @Test
+    public void deltaOfAnotherTableOfSameVersionIsNotApplied() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2));
+        RoutingTable table = repository.getRoutingTable();
+
+        // the same version changed in another partition
+        RoutingTable other = new RoutingTable(table.getVersion(), ImmutableList.of(node2, node1));
+        assertFalse(repository.apply(new RoutingTableDelta(other, ImmutableList.of(node3), ImmutableList.of())));
+
+        // the same nodes of another epoch
+        RoutingTable restarted = new RoutingTable(table.getEpoch() + 1, table.getVersion(), table.getNodes());
+        assertFalse(repository.apply(new RoutingTableDelta(restarted, ImmutableList.of(node3), ImmutableList.of())));
+
+        assertSame(repository.getRoutingTable(), table);
+        assertTrue(repository.apply(new RoutingTableDelta(table, ImmutableList.of(node3), ImmutableList.of())));
+    }
+
+    @Test
+    public void tableOfLaterEpochReplacesAnyVersion() {
+        NodeRepository repository = createRepository();
+        assertTrue(repository.setRoutingTable(new RoutingTable(5, 40, ImmutableList.of(node1, node2))));
+
+        assertFalse(repository.setRoutingTable(new RoutingTable(4, 90, ImmutableList.of(node3))));
+        assertTrue(repository.setRoutingTable(new RoutingTable(6, 2, ImmutableList.of(node3))));
+        assertEquals(repository.getRoutingTable().getNodes(), ImmutableList.of(node3));
+
+        repository.add(node4);
+        assertEquals(repository.getRoutingTable().getEpoch(), 6);
+        assertEquals(repository.getRoutingTable().getVersion(), 3);
+    }
+
+    @Test
+    public void syncReportsChangedPositions() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2, node3, node4));
+        RoutingTable previous = repository.getRoutingTable();
+
+        RoutingTableChange change = repository.sync(ImmutableSet.of(node3, node4), node3);
+
+        assertSame(change.getPrevious(), previous);
+        assertSame(change.getCurrent(), repository.getRoutingTable());
+        assertEquals(change.getCurrent().getNodes(), ImmutableList.of(node4, node3));
+        assertEquals(change.getAddedIndexes(), new int[0]);
+        assertEquals(change.getRemovedIndexes(), new int[]{0, 1});
+        assertEquals(change.getMovedFromIndexes(), new int[]{3, 2});
+        assertEquals(change.getMovedToIndexes(), new int[]{0, 1});
+    }
+
+    @Test
+    public void addedNodeTakesPlaceOfRemovedOne() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2, node3));
+
+        RoutingTableChange change = repository.sync(ImmutableSet.of(node1, node3, node4), node1);
+
+        assertEquals(change.getCurrent().getNodes(), ImmutableList.of(node1, node4, node3));
+        assertEquals(change.getAddedIndexes(), new int[]{1});
+        assertEquals(change.getRemovedIndexes(), new int[]{1});
+        assertEquals(change.getMovedFromIndexes(), new int[0]);
+        assertFalse(change.isEmpty());
+
+        assertTrue(repository.sync(ImmutableSet.of(node1, node3, node4), node1).isEmpty());
+    }
+
+    @Test
+    public void syncWithoutChangesKeepsVersion() {
+        NodeRepository repository = createRepository();
+        repository.setNodes(ImmutableList.of(node1, node2));
+        RoutingTable table = repository.getRoutingTable();
+
+        List<RoutingTable> published = new ArrayList<>();
+        repository.addListener((previous, current) -> published.add(current));
+
+        RoutingTableChange change = repository.sync(ImmutableSet.of(node2, node1), node1);
+
+        assertTrue(change.isEmpty());
+        assertTrue(change.getDelta().isEmpty());
+        assertSame(change.getPrevious(), table);
+        assertSame(change.getCurrent(), table);
+        assertSame(repository.getRoutingTable(), table);
+        assertTrue(published.isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package org.lib.sharding.repository;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.lib.sharding.domain.ClusterNode;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class LockFreeNodeRepositoryTest extends BaseNodeRepositoryTest {
+
+    @Override
+    protected NodeRepository createRepository() {
+        return new LockFreeNodeRepository();
+    }
+
+    @Test
+    public void concurrentWritersDoNotLoseChanges() throws InterruptedException {
+        NodeRepository repository = createRepository();
+        int threads = 4;
+        int nodesPerThread = 500;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < nodesPerThread; j++) {
+                    ClusterNode node = new ClusterNode(randomUUID());
+                    repository.add(node);
+                    if (j % 2 == 1) {
+                        repository.remove(node);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(repository.size(), threads * nodesPerThread / 2);
+        assertEquals(repository.getRoutingTable().getVersion(), threads * nodesPerThread * 3 / 2);
+    }
+
+    @Test
+    public void listenersGetVersionsInOrder() throws InterruptedException {
+        NodeRepository repository = createRepository();
+        int threads = 4;
+        int changesPerThread = 2000;
+        List<long[]> versions = Collections.synchronizedList(new ArrayList<>());
+        repository.addListener((previous, current) -> versions.add(new long[]{previous.getVersion(), current.getVersion()}));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < changesPerThread; j++) {
+                    repository.add(new ClusterNode(randomUUID()));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(versions.size(), threads * changesPerThread);
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(versions.get(i), new long[]{i, i + 1});
+        }
+    }
+}
@@ -27,8 +27,10 @@ import org.lib.sharding.configuration.SecondServerRootModule;
 import org.testng.annotations.BeforeMethod;
 
 import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 import static com.google.inject.Guice.createInjector;
+import static org.testng.Assert.assertTrue;
 
 public abstract class BaseMultipleInjectorTest {
     protected Injector firstServerInjector;
@@ -48,4 +50,15 @@ public abstract class BaseMultipleInjectorTest {
     protected Set<Module> getSecondInjectorModules() {
         return ImmutableSet.of(new SecondServerRootModule());
     }
+
+    /**
+     * Polls the condition for ten seconds at most, the cluster state is updated asynchronously.
+     */
+    protected static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
 }
@@ -0,0 +1,152 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Injector;
+import org.jgroups.util.UUID;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.NodeRepository;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.inject.Guice.createInjector;
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Properties every strategy except the jump hash must keep.
+ */
+public abstract class BaseRoutingStrategyTest {
+    protected static final int KEYS = 100000;
+
+    protected Injector injector;
+    protected NodeRepository nodeRepository;
+    protected ClientNodeRouter router;
+
+    protected abstract Class<? extends RoutingStrategy> getRoutingStrategyClass();
+
+    @BeforeMethod
+    protected void setUp() {
+        injector = createInjector(binder -> binder.bind(RoutingStrategy.class).to(getRoutingStrategyClass()));
+
+        nodeRepository = injector.getInstance(NodeRepository.class);
+        router = injector.getInstance(ClientNodeRouter.class);
+    }
+
+    @Test
+    public void keysAreSpreadEvenly() {
+        // fixed addresses, the spread of random ones is out of the bounds once in a while
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            nodes.add(new ClusterNode(new UUID(0x5eed, i)));
+        }
+        nodeRepository.setNodes(nodes);
+
+        Map<ClusterNode, Integer> counts = new HashMap<>();
+        for (long key = 0; key < KEYS; key++) {
+            counts.merge(router.getNodeByKey(key), 1, Integer::sum);
+        }
+
+        assertEquals(counts.keySet().size(), nodes.size());
+        for (int count : counts.values()) {
+            assertTrue(Math.abs(count - KEYS / nodes.size()) < KEYS / nodes.size() / 4, "count " + count);
+        }
+    }
+
+    @Test
+    public void keysAreSpreadByWeight() {
+        List<ClusterNode> nodes = nodes(3);
+        nodes.get(2).getProperties().put(ClusterNode.WEIGHT, 4);
+        nodeRepository.setNodes(nodes);
+
+        Map<ClusterNode, Integer> counts = new HashMap<>();
+        for (long key = 0; key < KEYS; key++) {
+            counts.merge(router.getNodeByKey(key), 1, Integer::sum);
+        }
+
+        double share = counts.get(nodes.get(2)) / (double) KEYS;
+        assertTrue(Math.abs(share - 4.0 / 6) < 0.05, "share " + share);
+    }
+
+    @Test
+    public void removingAnyNodeMovesOnlyItsKeys() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        ClusterNode[] before = route();
+
+        ClusterNode removed = nodes.get(1);
+        nodeRepository.remove(removed);
+        ClusterNode[] after = route();
+
+        for (int key = 0; key < KEYS; key++) {
+            if (before[key].equals(removed)) {
+                assertNotEquals(after[key], removed);
+            } else {
+                assertEquals(after[key], before[key]);
+            }
+        }
+    }
+
+    @Test
+    public void addedNodeTakesKeysOnlyForItself() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes.subList(0, 4));
+        ClusterNode[] before = route();
+
+        ClusterNode added = nodes.get(4);
+        nodeRepository.add(added);
+        ClusterNode[] after = route();
+
+        for (int key = 0; key < KEYS; key++) {
+            assertTrue(after[key].equals(before[key]) || after[key].equals(added));
+        }
+    }
+
+    @Test
+    public void nodesOrderDoesNotMatter() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        ClusterNode[] before = route();
+
+        List<ClusterNode> shuffled = new ArrayList<>(nodes);
+        Collections.reverse(shuffled);
+        nodeRepository.setNodes(ImmutableList.copyOf(shuffled));
+
+        assertEquals(route(), before);
+    }
+
+    protected ClusterNode[] route() {
+        ClusterNode[] result = new ClusterNode[KEYS];
+        for (int key = 0; key < KEYS; key++) {
+            result[key] = router.getNodeByKey(key);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,264 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.inject.Injector;
+import com.google.inject.ProvisionException;
+import org.jgroups.Address;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeLoads;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.inject.Guice.createInjector;
+import static com.google.inject.name.Names.named;
+import static org.jgroups.util.UUID.randomUUID;
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class BoundedLoadRoutingStrategyTest extends BaseRoutingStrategyTest {
+    private final Address reporter = randomUUID();
+
+    @Override
+    protected Class<? extends RoutingStrategy> getRoutingStrategyClass() {
+        return BoundedLoadRoutingStrategy.class;
+    }
+
+    @Test
+    public void routesAsRingWhileDemandIsEven() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        setDemand(nodes, 1.1, 1.1, 1.1, 1.1, 1.1);
+
+        NodeLocator ring = injector.getInstance(RingRoutingStrategy.class).createLocator(nodeRepository.getRoutingTable());
+        for (long key = 0; key < KEYS; key++) {
+            assertEquals(router.getNodeByKey(key), nodes.get(ring.getNodeIndex(injector.getInstance(KeyHasher.class).hashLong(key))));
+        }
+    }
+
+    @Test
+    public void overloadedNodeSpillsOnlyItsExcess() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+
+        Map<Long, ClusterNode> before = new HashMap<>();
+        for (long key = 0; key < KEYS; key++) {
+            before.put(key, router.getNodeByKey(key));
+        }
+
+        // the average is 1.4, the bound is 1.75 with the default epsilon, so 5/12 of the keys go
+        ClusterNode hot = nodes.get(2);
+        setDemand(nodes, 1.0, 1.0, 3.0, 1.0, 1.0);
+
+        int owned = 0;
+        int spilled = 0;
+        ClusterNode[] preference = new ClusterNode[3];
+        for (long key = 0; key < KEYS; key++) {
+            ClusterNode node = router.getNodeByKey(key);
+            if (before.get(key).equals(hot)) {
+                owned++;
+                if (!node.equals(hot)) {
+                    spilled++;
+                }
+            } else {
+                assertEquals(node, before.get(key));
+            }
+
+            router.getNodesByKey(key, preference);
+            assertEquals(preference[0], node);
+        }
+        double share = spilled / (double) owned;
+        assertTrue(Math.abs(share - 5.0 / 12) < 0.02, "spilled share " + share);
+
+        // the demand goes back to normal
+        setDemand(nodes, 1.0, 1.0, 1.0, 1.0, 1.0);
+        for (long key = 0; key < KEYS; key++) {
+            assertEquals(router.getNodeByKey(key), before.get(key));
+        }
+    }
+
+    @Test
+    public void skewedDemandStaysWithinBound() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        NodeLocator ring = injector.getInstance(RingRoutingStrategy.class).createLocator(nodeRepository.getRoutingTable());
+        KeyHasher hasher = injector.getInstance(KeyHasher.class);
+
+        // the average is 3.2, the bound is 4.0: the hot node gives 4.0 away, two nodes have room for 0.5 only
+        double[] demand = {3.5, 3.5, 8.0, 0.5, 0.5};
+        setDemand(nodes, demand);
+
+        int[] placed = new int[nodes.size()];
+        int[] owners = new int[KEYS];
+        for (int key = 0; key < KEYS; key++) {
+            owners[key] = ring.getNodeIndex(hasher.hashLong(key));
+            placed[owners[key]]++;
+        }
+
+        double[] served = new double[nodes.size()];
+        for (int key = 0; key < KEYS; key++) {
+            served[nodes.indexOf(router.getNodeByKey((long) key))] += demand[owners[key]] / placed[owners[key]];
+        }
+        for (int i = 0; i < served.length; i++) {
+            assertTrue(served[i] < 4.0 * 1.05, "node " + i + " serves " + served[i]);
+        }
+    }
+
+    @Test
+    public void replicaLookupsAreNotCounted() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        NodeLoads loads = injector.getInstance(NodeLoads.class);
+        loads.report(reporter);
+
+        ClusterNode[] replicas = new ClusterNode[3];
+        for (long key = 0; key < KEYS; key++) {
+            router.getNodesByKey(key, replicas);
+        }
+        for (double rate : loads.report(reporter).values()) {
+            assertEquals(rate, 0.0);
+        }
+
+        router.getNodeByKey(42L);
+        assertTrue(loads.report(reporter).values().stream().anyMatch(rate -> rate > 0));
+    }
+
+    @Test
+    public void growingExcessKeepsSpilledKeys() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        NodeLocator ring = injector.getInstance(RingRoutingStrategy.class).createLocator(nodeRepository.getRoutingTable());
+        KeyHasher hasher = injector.getInstance(KeyHasher.class);
+        ClusterNode hot = nodes.get(2);
+
+        setDemand(nodes, 1.0, 1.0, 2.5, 1.0, 1.0);
+        List<Long> spilled = new ArrayList<>();
+        for (long key = 0; key < KEYS; key++) {
+            if (nodes.get(ring.getNodeIndex(hasher.hashLong(key))).equals(hot) && !router.getNodeByKey(key).equals(hot)) {
+                spilled.add(key);
+            }
+        }
+        assertFalse(spilled.isEmpty());
+
+        setDemand(nodes, 1.0, 1.0, 4.0, 1.0, 1.0);
+        for (long key : spilled) {
+            assertNotEquals(router.getNodeByKey(key), hot);
+        }
+    }
+
+    @Test
+    public void spillStartsAboveHysteresisAndStopsBelowBound() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        BoundedLoadNodeLocator locator = (BoundedLoadNodeLocator) injector.getInstance(RoutingStrategy.class)
+                .createLocator(nodeRepository.getRoutingTable());
+
+        // the bound is 1.3625, within the hysteresis band of 10%
+        setDemand(nodes, 1.0, 1.0, 1.45, 1.0, 1.0);
+        assertNull(locator.getSpillFractions());
+
+        setDemand(nodes, 1.0, 1.0, 3.0, 1.0, 1.0);
+        assertTrue(locator.getSpillFractions()[2] > 0.4);
+
+        // still spilling within the band
+        setDemand(nodes, 1.0, 1.0, 1.45, 1.0, 1.0);
+        assertEquals(locator.getSpillFractions()[2], (1.45 - 1.3625) / 1.45, 1e-9);
+
+        setDemand(nodes, 1.0, 1.0, 1.3, 1.0, 1.0);
+        assertNull(locator.getSpillFractions());
+    }
+
+    @Test
+    public void unknownDemandIsNeverOverloaded() {
+        List<ClusterNode> nodes = nodes(3);
+        nodeRepository.setNodes(nodes);
+        RoutingTable table = nodeRepository.getRoutingTable();
+
+        NodeLoads loads = injector.getInstance(NodeLoads.class);
+        loads.update(reporter, demand(nodes.subList(0, 1), 5.0));
+
+        BoundedLoadNodeLocator locator = (BoundedLoadNodeLocator) injector.getInstance(RoutingStrategy.class).createLocator(table);
+        // the only known demand is the average one
+        assertNull(locator.getSpillFractions());
+
+        loads.update(reporter, demand(nodes.subList(0, 2), 5.0, 1.0));
+        double[] fractions = locator.getSpillFractions();
+        assertTrue(fractions[0] > 0);
+        assertTrue(fractions[1] == 0 && fractions[2] == 0);
+
+        loads.retain(nodes.subList(1, 3));
+        assertNull(locator.getSpillFractions());
+    }
+
+    @Test
+    public void demandIsCountedByPlacement() {
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        setDemand(nodes, 1.0, 1.0, 3.0, 1.0, 1.0);
+
+        NodeLocator ring = injector.getInstance(RingRoutingStrategy.class).createLocator(nodeRepository.getRoutingTable());
+        KeyHasher hasher = injector.getInstance(KeyHasher.class);
+        Map<Address, Integer> placed = new HashMap<>();
+        NodeLoads loads = injector.getInstance(NodeLoads.class);
+        loads.report(reporter);
+        for (long key = 0; key < KEYS; key++) {
+            router.getNodeByKey(key);
+            placed.merge(nodes.get(ring.getNodeIndex(hasher.hashLong(key))).getAddress(), 1, Integer::sum);
+        }
+
+        Map<Address, Double> rates = loads.report(reporter);
+        double scale = rates.get(nodes.get(0).getAddress()) / placed.get(nodes.get(0).getAddress());
+        for (ClusterNode node : nodes) {
+            assertEquals(rates.get(node.getAddress()) / scale, placed.get(node.getAddress()), 1e-6);
+            assertEquals(loads.getDemand(node.getAddress()), rates.get(node.getAddress()));
+        }
+    }
+
+    @Test(expectedExceptions = ProvisionException.class)
+    public void cacheIsRejected() {
+        Injector injector = createInjector(binder -> {
+            binder.bind(RoutingStrategy.class).to(BoundedLoadRoutingStrategy.class);
+            binder.bindConstant().annotatedWith(named("sharding.router.cache.size")).to(1024);
+        });
+        injector.getInstance(ClientNodeRouter.class);
+    }
+
+    private void setDemand(List<ClusterNode> nodes, double... rates) {
+        injector.getInstance(NodeLoads.class).update(reporter, demand(nodes, rates));
+    }
+
+    private static Map<Address, Double> demand(List<ClusterNode> nodes, double... rates) {
+        Map<Address, Double> demand = new HashMap<>();
+        for (int i = 0; i < rates.length; i++) {
+            demand.put(nodes.get(i).getAddress(), rates[i]);
+        }
+        return demand;
+    }
+}
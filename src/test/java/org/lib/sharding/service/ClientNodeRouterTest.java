@@ -0,0 +1,252 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Injector;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.NodeRepository;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.Guice.createInjector;
+import static com.google.inject.name.Names.named;
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClientNodeRouterTest {
+    private NodeRepository nodeRepository;
+    private ClientNodeRouter router;
+
+    @BeforeMethod
+    protected void setUp() {
+        Injector injector = createInjector();
+
+        nodeRepository = injector.getInstance(NodeRepository.class);
+        router = injector.getInstance(ClientNodeRouter.class);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void emptyNodesList() {
+        router.getNodeByKey(42L);
+    }
+
+    @Test
+    public void primitiveAndBoxedRoutesAgree() {
+        nodeRepository.setNodes(nodes(5));
+
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(router.getNodeByKey(key), router.getNodeByKey(Long.valueOf(key)));
+        }
+    }
+
+    @Test
+    public void batchRoutesAsSingleKeys() {
+        nodeRepository.setNodes(nodes(7));
+
+        long[] keys = new Random(42).longs(1000).toArray();
+
+        Map<ClusterNode, long[]> grouped = router.getNodesByKeys(keys);
+
+        int routed = 0;
+        for (Map.Entry<ClusterNode, long[]> entry : grouped.entrySet()) {
+            for (long key : entry.getValue()) {
+                assertEquals(router.getNodeByKey(key), entry.getKey());
+            }
+            routed += entry.getValue().length;
+        }
+        assertEquals(routed, keys.length);
+
+        List<Long> boxedKeys = ImmutableList.copyOf(new Random(42).longs(1000).boxed().iterator());
+        Map<ClusterNode, List<Long>> boxedGrouped = router.getNodesByKeys(boxedKeys);
+        assertEquals(boxedGrouped.keySet(), grouped.keySet());
+        for (Map.Entry<ClusterNode, List<Long>> entry : boxedGrouped.entrySet()) {
+            long[] expected = grouped.get(entry.getKey());
+            assertEquals(entry.getValue().size(), expected.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(entry.getValue().get(i).longValue(), expected[i]);
+            }
+        }
+    }
+
+    @Test
+    public void parallelBatch() {
+        nodeRepository.setNodes(nodes(3));
+
+        long[] keys = new Random(7).longs(100000).toArray();
+
+        Map<ClusterNode, long[]> sequential = router.getNodesByKeys(keys);
+        Map<ClusterNode, long[]> parallel = router.getNodesByKeys(keys, ForkJoinPool.commonPool());
+
+        assertEquals(parallel.keySet(), sequential.keySet());
+        for (ClusterNode node : sequential.keySet()) {
+            assertTrue(Arrays.equals(parallel.get(node), sequential.get(node)));
+        }
+    }
+
+    @Test
+    public void cachedRoutes() {
+        Injector injector = createInjector(binder -> binder.bindConstant().annotatedWith(named("sharding.router.cache.size")).to(1024));
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+
+        List<ClusterNode> nodes = nodes(5);
+        nodeRepository.setNodes(nodes);
+        this.nodeRepository.setNodes(nodes);
+
+        for (long key = 0; key < 100; key++) {
+            assertEquals(router.getNodeByKey(key), this.router.getNodeByKey(key));
+            assertEquals(router.getNodeByKey(key), this.router.getNodeByKey(key));
+        }
+        assertEquals(router.getRoutingCache().getHits(), 100);
+
+        nodeRepository.setNodes(nodes.subList(0, 2));
+        for (long key = 0; key < 100; key++) {
+            assertTrue(nodes.subList(0, 2).contains(router.getNodeByKey(key)));
+        }
+        assertEquals(router.getRoutingCache().getHits(), 100);
+    }
+
+    @Test
+    public void asyncRouteWaitsForFirstTable() throws Exception {
+        CompletableFuture<ClusterNode> node = router.getNodeByKeyAsync(42L);
+        assertFalse(node.isDone());
+
+        List<ClusterNode> nodes = nodes(3);
+        nodeRepository.setNodes(nodes);
+
+        assertEquals(node.get(1, TimeUnit.SECONDS), router.getNodeByKey(42L));
+        assertTrue(router.getNodeByKeyAsync(42L).isDone());
+    }
+
+    @Test
+    public void asyncRouteIsNotCompletedByPublisher() throws Exception {
+        CompletableFuture<Thread> completer = router.getNodeByKeyAsync(42L).thenApply(node -> Thread.currentThread());
+
+        nodeRepository.setNodes(nodes(3));
+
+        assertNotEquals(completer.get(1, TimeUnit.SECONDS), Thread.currentThread());
+    }
+
+    @Test
+    public void asyncRouteWaitsForTransition() throws Exception {
+        Injector injector = createInjector();
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+        RoutingTableTracker tracker = injector.getInstance(RoutingTableTracker.class);
+
+        List<ClusterNode> nodes = nodes(4);
+        nodeRepository.setNodes(nodes.subList(0, 2));
+
+        tracker.beginTransition(10000);
+        CompletableFuture<ClusterNode> node = router.getNodeByKeyAsync(42L);
+        nodeRepository.setNodes(nodes);
+        assertFalse(node.isDone());
+
+        tracker.endTransition();
+        assertEquals(node.get(1, TimeUnit.SECONDS), router.getNodeByKey(42L));
+
+        // a transition which never gets its table ends by the timeout
+        tracker.beginTransition(100);
+        node = router.getNodeByKeyAsync(42L);
+        assertFalse(node.isDone());
+        assertEquals(node.get(5, TimeUnit.SECONDS), router.getNodeByKey(42L));
+    }
+
+    @Test
+    public void measuredRoutes() {
+        Injector injector = createInjector(binder -> binder.bindConstant().annotatedWith(named("sharding.metrics.routing")).to(true));
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+        ShardingMetrics metrics = injector.getInstance(ShardingMetrics.class);
+
+        List<ClusterNode> nodes = nodes(3);
+        nodeRepository.setNodes(nodes);
+
+        Map<String, Long> expected = new HashMap<>();
+        for (long key = 0; key < 1000; key++) {
+            expected.merge(router.getNodeByKey(key).getAddress().toString(), 1L, Long::sum);
+        }
+
+        assertEquals(metrics.getRoutingCount(), 1000);
+        assertEquals(metrics.getKeysPerNode(), expected);
+        assertTrue(metrics.getRoutingLatencyP99Nanos() <= metrics.getRoutingLatencyMaxNanos());
+        assertEquals(metrics.getRoutingTableVersion(), 1);
+
+        // the left node is forgotten
+        nodeRepository.remove(nodes.get(1));
+        expected.remove(nodes.get(1).getAddress().toString());
+        assertEquals(metrics.getKeysPerNode(), expected);
+    }
+
+    @DataProvider
+    public Object[][] strategies() {
+        return new Object[][]{
+                {JumpRoutingStrategy.class},
+                {RingRoutingStrategy.class},
+                {RendezvousRoutingStrategy.class}
+        };
+    }
+
+    @Test(dataProvider = "strategies")
+    public void replicas(Class<? extends RoutingStrategy> strategy) {
+        Injector injector = createInjector(binder -> binder.bind(RoutingStrategy.class).to(strategy));
+        injector.getInstance(NodeRepository.class).setNodes(nodes(5));
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+
+        ClusterNode[] result = new ClusterNode[3];
+        for (long key = 0; key < 1000; key++) {
+            List<ClusterNode> replicas = router.getNodesByKey(key, 3);
+
+            assertEquals(replicas.size(), 3);
+            assertEquals(new HashSet<>(replicas).size(), 3);
+            assertEquals(replicas.get(0), router.getNodeByKey(key));
+            assertEquals(router.getNodesByKey(Long.valueOf(key), 3), replicas);
+
+            assertEquals(router.getNodesByKey(key, result), 3);
+            assertEquals(Arrays.asList(result), replicas);
+        }
+
+        assertEquals(router.getNodesByKey(42L, 10).size(), 5);
+    }
+
+    static List<ClusterNode> nodes(int count) {
+        ImmutableList.Builder<ClusterNode> nodes = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new ClusterNode(randomUUID()));
+        }
+        return nodes.build();
+    }
+}
@@ -51,36 +51,44 @@ public class ClusterMembershipServiceTest extends BaseMultipleInjectorTest {
     @Test
     public void startTwoNodes() throws InterruptedException {
         membershipService1.start("node1");
-        membershipService2.start("node2");
-
-        assertEquals(membershipService1.getNodes().size(), 2);
-        assertEquals(membershipService2.getNodes().size(), 2);
-        assertEquals(membershipService1.getNodes(), membershipService2.getNodes());
-
-        membershipService1.stop();
-        membershipService2.stop();
+        try {
+            membershipService2.start("node2");
+            try {
+                // the nodes list is updated on its own thread after the view change
+                awaitTrue(() -> membershipService1.getNodes().size() == 2
+                        && membershipService1.getNodes().equals(membershipService2.getNodes()));
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
     }
 
     @Test
     public void removeNodesFromTheEnd() throws InterruptedException {
         membershipService1.start("node1");
-        membershipService2.start("node2");
-
-        assertEquals(membershipService1.getNodes().size(), 2);
-        assertEquals(membershipService2.getNodes().size(), 2);
-        assertEquals(membershipService1.getNodes(), membershipService2.getNodes());
-
-        membershipService2.stop();
-        Thread.sleep(10);
-        assertEquals(membershipService1.getNodes().size(), 1);
-
-        membershipService2.start("node2");
-
-        assertEquals(membershipService1.getNodes(), membershipService2.getNodes());
-        assertEquals(membershipService1.getNodes().get(0).getAddress().toString(), "node1");
-
-        membershipService1.stop();
-        membershipService2.stop();
+        try {
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService1.getNodes().size() == 2
+                        && membershipService1.getNodes().equals(membershipService2.getNodes()));
+            } finally {
+                membershipService2.stop();
+            }
+            awaitTrue(() -> membershipService1.getNodes().size() == 1);
+
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService1.getNodes().size() == 2
+                        && membershipService1.getNodes().equals(membershipService2.getNodes()));
+                assertEquals(membershipService1.getNodes().get(0).getAddress().toString(), "node1");
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
     }
 
     @BeforeMethod(dependsOnMethods = "createInjectors")
@@ -0,0 +1,131 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CoalescingSchedulerTest {
+
+    @Test
+    public void burstIsCoalescedIntoOneRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        CoalescingScheduler scheduler = new CoalescingScheduler(
+                () -> {
+                    runs.incrementAndGet();
+                    done.countDown();
+                },
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule(200, 1000);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        assertEquals(runs.get(), 1);
+        assertEquals(scheduler.getRequested(), 100);
+        assertEquals(scheduler.getCoalesced(), 99);
+    }
+
+    @Test
+    public void requestDuringRunSchedulesOneMoreRun() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        CoalescingScheduler scheduler = new CoalescingScheduler(
+                () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                },
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        scheduler.schedule(0, 0);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scheduler.schedule(0, 0);
+        scheduler.schedule(0, 0);
+        scheduler.schedule(0, 0);
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(scheduler.getCoalesced(), 2);
+    }
+
+    @Test
+    public void requestPutsPendingRunOff() throws InterruptedException {
+        AtomicLong ranAt = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        CoalescingScheduler scheduler = new CoalescingScheduler(
+                () -> {
+                    ranAt.set(System.nanoTime());
+                    done.countDown();
+                },
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        long lastRequest = 0;
+        for (int i = 0; i < 5; i++) {
+            lastRequest = System.nanoTime();
+            scheduler.schedule(200, 10000);
+            Thread.sleep(50);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(ranAt.get() - lastRequest >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(scheduler.getCoalesced(), 4);
+    }
+
+    @Test
+    public void steadyRequestsDontStarveRun() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        CoalescingScheduler scheduler = new CoalescingScheduler(
+                done::countDown,
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        long start = System.nanoTime();
+        while (done.getCount() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            scheduler.schedule(200, 400);
+            Thread.sleep(20);
+        }
+
+        assertEquals(done.getCount(), 0);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+}
@@ -0,0 +1,127 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Module;
+import org.lib.sharding.configuration.FirstServerRootModule;
+import org.lib.sharding.configuration.SecondServerRootModule;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+/**
+ * Only the view coordinator updates the nodes list.
+ */
+public class CoordinatorMembershipServiceTest extends BaseMultipleInjectorTest {
+    private static final String COORDINATOR_ONLY = "sharding.cluster.update.coordinatorOnly";
+    private static final String TRANSITION_TIMEOUT = "sharding.cluster.transition.timeout";
+
+    private ClusterMembershipService membershipService1;
+
+    private ClusterMembershipService membershipService2;
+
+    @Test
+    public void coordinatorUpdatesNodes() throws InterruptedException {
+        membershipService1.start("node1");
+        try {
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService1.getNodes().size() == 2
+                        && membershipService1.getNodes().equals(membershipService2.getNodes()));
+                assertEquals(membershipService1.getNodes().get(0).getAddress().toString(), "node1");
+            } finally {
+                membershipService2.stop();
+            }
+
+            awaitTrue(() -> membershipService1.getNodes().size() == 1);
+        } finally {
+            membershipService1.stop();
+        }
+    }
+
+    @Test
+    public void unchangedTableEndsTransitionOfMembers() throws Exception {
+        membershipService1.start("node1");
+        try {
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService1.getNodes().size() == 2
+                        && membershipService1.getNodes().equals(membershipService2.getNodes()));
+                ClientNodeRouter router2 = secondServerInjector.getInstance(ClientNodeRouter.class);
+
+                // the same view again, the member waits for the coordinator
+                ((ClusterMembershipServiceImpl) membershipService2).viewAccepted(membershipService2.getChannel().getView());
+                assertFalse(router2.getNodeByKeyAsync(42L).isDone());
+
+                // the coordinator has nothing to change
+                ((ClusterMembershipServiceImpl) membershipService1).viewAccepted(membershipService1.getChannel().getView());
+                router2.getNodeByKeyAsync(42L).get(5, TimeUnit.SECONDS);
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
+    }
+
+    @BeforeMethod(dependsOnMethods = "createInjectors")
+    protected void setUp() {
+        membershipService1 = firstServerInjector.getInstance(ClusterMembershipService.class);
+
+        membershipService2 = secondServerInjector.getInstance(ClusterMembershipService.class);
+    }
+
+    @Override
+    protected Set<Module> getFirstInjectorModules() {
+        return ImmutableSet.of(
+                new FirstServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(COORDINATOR_ONLY, "true");
+                        return properties;
+                    }
+                }
+        );
+    }
+
+    @Override
+    protected Set<Module> getSecondInjectorModules() {
+        return ImmutableSet.of(
+                new SecondServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(COORDINATOR_ONLY, "true");
+                        properties.setProperty(TRANSITION_TIMEOUT, "60000");
+                        return properties;
+                    }
+                }
+        );
+    }
+}
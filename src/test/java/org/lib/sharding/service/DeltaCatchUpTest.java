@@ -0,0 +1,178 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Module;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.configuration.FirstServerRootModule;
+import org.lib.sharding.configuration.SecondServerRootModule;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableDelta;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.repository.SimpleNodeRepository;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Changes are broadcast to the members as deltas. A member which has missed a delta is brought up to date
+ * by the publisher: with the kept deltas while they continue its table, with the whole table otherwise.
+ */
+public class DeltaCatchUpTest extends BaseMultipleInjectorTest {
+    private static final String COORDINATOR_ONLY = "sharding.cluster.update.coordinatorOnly";
+    private static final String UPDATE_DELAY = "sharding.cluster.update.delay";
+
+    private MissingDeltasRepository repository2;
+
+    private ClusterMembershipService membershipService1;
+
+    private ClusterMembershipService membershipService2;
+
+    private ShardingMetrics metrics1;
+
+    @Test
+    public void deltaIsBroadcast() throws InterruptedException {
+        startAndAwaitSameTables();
+
+        // the state transfer is the only whole table
+        assertEquals(repository2.tables.get(), 1);
+        assertEquals(repository2.applied.get(), 1);
+        assertEquals(metrics1.getRpcTimeouts(), 0);
+    }
+
+    @Test
+    public void missedDeltaIsResent() throws InterruptedException {
+        repository2.missing.set(1);
+
+        startAndAwaitSameTables();
+
+        // the state transfer is the only whole table
+        assertEquals(repository2.tables.get(), 1);
+        assertEquals(repository2.applied.get(), 1);
+        assertEquals(repository2.missing.get(), 0);
+    }
+
+    @Test
+    public void wholeTableIsSentWhenDeltasDontHelp() throws InterruptedException {
+        repository2.missing.set(Integer.MAX_VALUE);
+
+        startAndAwaitSameTables();
+
+        assertEquals(repository2.tables.get(), 2);
+        assertEquals(repository2.applied.get(), 0);
+    }
+
+    private void startAndAwaitSameTables() throws InterruptedException {
+        membershipService1.start("node1");
+        try {
+            NodeRepository repository1 = firstServerInjector.getInstance(NodeRepository.class);
+            awaitTrue(() -> repository1.getRoutingTable().getEpoch() != 0);
+
+            membershipService2.start("node2");
+            try {
+                long epoch = repository1.getRoutingTable().getEpoch();
+                awaitTrue(() -> membershipService1.getNodes().size() == 2
+                        && repository2.getRoutingTable().equals(repository1.getRoutingTable()));
+                assertEquals(repository2.getRoutingTable().getEpoch(), epoch);
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
+    }
+
+    @BeforeMethod(dependsOnMethods = "createInjectors")
+    protected void setUp() {
+        membershipService1 = firstServerInjector.getInstance(ClusterMembershipService.class);
+        metrics1 = firstServerInjector.getInstance(ShardingMetrics.class);
+
+        membershipService2 = secondServerInjector.getInstance(ClusterMembershipService.class);
+    }
+
+    @Override
+    protected Set<Module> getFirstInjectorModules() {
+        return ImmutableSet.of(
+                new FirstServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(COORDINATOR_ONLY, "true");
+                        // the joining node gets the state before the coordinator publishes its change
+                        properties.setProperty(UPDATE_DELAY, "500");
+                        return properties;
+                    }
+                }
+        );
+    }
+
+    @Override
+    protected Set<Module> getSecondInjectorModules() {
+        repository2 = new MissingDeltasRepository();
+        return ImmutableSet.of(
+                new SecondServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(COORDINATOR_ONLY, "true");
+                        return properties;
+                    }
+                },
+                binder -> binder.bind(NodeRepository.class).toInstance(repository2)
+        );
+    }
+
+    /**
+     * Drops the given number of deltas as if their messages were lost.
+     */
+    private static class MissingDeltasRepository extends SimpleNodeRepository {
+        private final AtomicInteger missing = new AtomicInteger();
+        private final AtomicInteger applied = new AtomicInteger();
+        private final AtomicInteger tables = new AtomicInteger();
+
+        @Override
+        public boolean setRoutingTable(@NotNull RoutingTable table) {
+            boolean accepted = super.setRoutingTable(table);
+            if (accepted) {
+                tables.incrementAndGet();
+            }
+            return accepted;
+        }
+
+        @Override
+        public boolean apply(@NotNull RoutingTableDelta delta) {
+            if (missing.getAndUpdate(count -> count > 0 ? count - 1 : 0) > 0) {
+                return false;
+            }
+            boolean accepted = super.apply(delta);
+            if (accepted) {
+                applied.incrementAndGet();
+            }
+            return accepted;
+        }
+    }
+}
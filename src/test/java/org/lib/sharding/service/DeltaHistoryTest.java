@@ -0,0 +1,98 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.collect.ImmutableList;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableDelta;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class DeltaHistoryTest {
+
+    @Test
+    public void deltasSinceKnownTable() {
+        DeltaHistory history = new DeltaHistory(() -> 64);
+        List<RoutingTable> tables = new ArrayList<>();
+        List<RoutingTableDelta> deltas = new ArrayList<>();
+        RoutingTable table = new RoutingTable(1, 0, ImmutableList.of());
+        for (int i = 0; i < 4; i++) {
+            tables.add(table);
+            ClusterNode node = new ClusterNode(randomUUID());
+            deltas.add(new RoutingTableDelta(table, ImmutableList.of(node), ImmutableList.of()));
+            history.add(deltas.get(i));
+            table = new RoutingTable(1, table.getVersion() + 1, ImmutableList.<ClusterNode>builder().addAll(table.getNodes()).add(node).build());
+        }
+
+        assertEquals(history.since(tables.get(0).getStamp()), deltas);
+        assertEquals(history.since(tables.get(2).getStamp()), deltas.subList(2, 4));
+        assertNull(history.since(table.getStamp()));
+    }
+
+    @Test
+    public void tableOfSameVersionButOtherNodesIsUnknown() {
+        DeltaHistory history = new DeltaHistory(() -> 64);
+        ClusterNode node1 = new ClusterNode(randomUUID());
+        ClusterNode node2 = new ClusterNode(randomUUID());
+        RoutingTable table = new RoutingTable(1, 3, ImmutableList.of(node1, node2));
+        history.add(new RoutingTableDelta(table, ImmutableList.of(new ClusterNode(randomUUID())), ImmutableList.of()));
+
+        assertNull(history.since(new RoutingTable(1, 3, ImmutableList.of(node2, node1)).getStamp()));
+        assertNull(history.since(new RoutingTable(2, 3, ImmutableList.of(node1, node2)).getStamp()));
+    }
+
+    @Test
+    public void gapStartsHistoryOver() {
+        DeltaHistory history = new DeltaHistory(() -> 64);
+        RoutingTable table = new RoutingTable(1, 3, ImmutableList.of());
+        history.add(new RoutingTableDelta(table, ImmutableList.of(new ClusterNode(randomUUID())), ImmutableList.of()));
+
+        RoutingTable later = new RoutingTable(1, 7, ImmutableList.of());
+        history.add(new RoutingTableDelta(later, ImmutableList.of(new ClusterNode(randomUUID())), ImmutableList.of()));
+        assertEquals(history.size(), 1);
+
+        RoutingTable nextEpoch = new RoutingTable(2, 8, ImmutableList.of());
+        history.add(new RoutingTableDelta(nextEpoch, ImmutableList.of(new ClusterNode(randomUUID())), ImmutableList.of()));
+        assertEquals(history.size(), 1);
+        assertNull(history.since(later.getStamp()));
+    }
+
+    @Test
+    public void oldestDeltasAreDropped() {
+        DeltaHistory history = new DeltaHistory(() -> 2);
+        RoutingTable first = new RoutingTable(1, 0, ImmutableList.of());
+        RoutingTable table = first;
+        for (int i = 0; i < 5; i++) {
+            history.add(new RoutingTableDelta(table, ImmutableList.of(), ImmutableList.of()));
+            table = new RoutingTable(1, table.getVersion() + 1, ImmutableList.of());
+        }
+
+        assertEquals(history.size(), 2);
+        assertNull(history.since(first.getStamp()));
+    }
+}
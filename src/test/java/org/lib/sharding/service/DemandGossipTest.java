@@ -0,0 +1,103 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Module;
+import org.lib.sharding.configuration.FirstServerRootModule;
+import org.lib.sharding.configuration.SecondServerRootModule;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.NodeLoads;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Members send each other the demand their routers have seen.
+ */
+public class DemandGossipTest extends BaseMultipleInjectorTest {
+    private static final String LOAD_PERIOD = "sharding.cluster.load.period";
+
+    private ClusterMembershipService membershipService1;
+
+    private ClusterMembershipService membershipService2;
+
+    @Test
+    public void demandReachesOtherMembers() throws InterruptedException {
+        membershipService1.start("node1");
+        try {
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService2.getNodes().size() == 2);
+
+                ClientNodeRouter router1 = firstServerInjector.getInstance(ClientNodeRouter.class);
+                NodeLoads loads2 = secondServerInjector.getInstance(NodeLoads.class);
+                awaitTrue(() -> {
+                    for (long key = 0; key < 1000; key++) {
+                        router1.getNodeByKey(key);
+                    }
+                    for (ClusterNode node : membershipService2.getNodes()) {
+                        if (!(loads2.getDemand(node.getAddress()) > 0)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
+    }
+
+    @BeforeMethod(dependsOnMethods = "createInjectors")
+    protected void setUp() {
+        membershipService1 = firstServerInjector.getInstance(ClusterMembershipService.class);
+
+        membershipService2 = secondServerInjector.getInstance(ClusterMembershipService.class);
+    }
+
+    @Override
+    protected Set<Module> getFirstInjectorModules() {
+        return ImmutableSet.of(
+                new FirstServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(LOAD_PERIOD, "100");
+                        return properties;
+                    }
+                },
+                binder -> binder.bind(RoutingStrategy.class).to(BoundedLoadRoutingStrategy.class)
+        );
+    }
+
+    @Override
+    protected Set<Module> getSecondInjectorModules() {
+        return ImmutableSet.of(
+                new SecondServerRootModule(),
+                binder -> binder.bind(RoutingStrategy.class).to(BoundedLoadRoutingStrategy.class)
+        );
+    }
+}
@@ -0,0 +1,163 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Module;
+import org.lib.sharding.configuration.FirstServerRootModule;
+import org.lib.sharding.configuration.SecondServerRootModule;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Properties;
+import java.util.Set;
+
+import static com.google.inject.Guice.createInjector;
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A client which isn't a cluster member gets the tables of the members through their clients channel.
+ */
+public class JGroupsRoutingTableSourceTest extends BaseMultipleInjectorTest {
+    private static final String CLIENTS_ENABLED = "sharding.cluster.clients.enabled";
+    private static final String CLIENTS_CONFIG = "sharding.cluster.clients.config";
+
+    private ClusterMembershipService membershipService;
+
+    private NodeRepository member;
+
+    private RoutingTableClient tableClient;
+
+    private NodeRepository cache;
+
+    @Test
+    public void clientFollowsMemberTables() throws InterruptedException {
+        membershipService.start("node1");
+        try {
+            awaitTrue(() -> member.getNodes().size() == 1);
+
+            tableClient.start("client");
+            try {
+                assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+
+                // the client doesn't fetch periodically, the table comes with a push
+                member.add(new ClusterNode(randomUUID()));
+                awaitTrue(() -> cache.getRoutingTable().equals(member.getRoutingTable()));
+                assertEquals(membershipService.getNodes().size(), 2);
+            } finally {
+                tableClient.stop();
+            }
+        } finally {
+            membershipService.stop();
+        }
+    }
+
+    @Test
+    public void restartedClusterReplacesCachedTable() throws InterruptedException {
+        membershipService.start("node1");
+        RoutingTable stopped;
+        try {
+            awaitTrue(() -> member.getNodes().size() == 1);
+            member.add(new ClusterNode(randomUUID()));
+            member.add(new ClusterNode(randomUUID()));
+
+            tableClient.start("client");
+            awaitTrue(() -> cache.getRoutingTable().equals(member.getRoutingTable()));
+            stopped = member.getRoutingTable();
+        } finally {
+            membershipService.stop();
+        }
+
+        secondRestartedServerInjector = createInjector(getFirstInjectorModules());
+        ClusterMembershipService restarted = secondRestartedServerInjector.getInstance(ClusterMembershipService.class);
+        NodeRepository restartedMember = secondRestartedServerInjector.getInstance(NodeRepository.class);
+        restarted.start("node1");
+        try {
+            awaitTrue(() -> restartedMember.getNodes().size() == 1);
+            assertTrue(restartedMember.getRoutingTable().getVersion() < stopped.getVersion());
+
+            awaitTrue(() -> {
+                tableClient.refresh();
+                return cache.getRoutingTable().equals(restartedMember.getRoutingTable());
+            });
+        } finally {
+            tableClient.stop();
+            restarted.stop();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void clientsConfigIsRequired() {
+        createInjector(new FirstServerRootModule() {
+            @Override
+            protected Properties loadProperties() throws Exception {
+                Properties properties = super.loadProperties();
+                properties.setProperty(CLIENTS_ENABLED, "true");
+                return properties;
+            }
+        }).getInstance(ClusterMembershipService.class).start("node1");
+    }
+
+    @BeforeMethod(dependsOnMethods = "createInjectors")
+    protected void setUp() {
+        membershipService = firstServerInjector.getInstance(ClusterMembershipService.class);
+        member = firstServerInjector.getInstance(NodeRepository.class);
+
+        tableClient = secondServerInjector.getInstance(RoutingTableClient.class);
+        cache = secondServerInjector.getInstance(NodeRepository.class);
+    }
+
+    @Override
+    protected Set<Module> getFirstInjectorModules() {
+        return ImmutableSet.of(
+                new FirstServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(CLIENTS_ENABLED, "true");
+                        properties.setProperty(CLIENTS_CONFIG, "clients-tcp1.xml");
+                        return properties;
+                    }
+                }
+        );
+    }
+
+    @Override
+    protected Set<Module> getSecondInjectorModules() {
+        return ImmutableSet.of(
+                new SecondServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = new Properties();
+                        properties.setProperty("sharding.router.client.config", "clients-tcp2.xml");
+                        properties.setProperty("sharding.router.client.refreshPeriod", "0");
+                        return properties;
+                    }
+                },
+                binder -> binder.bind(RoutingTableSource.class).to(JGroupsRoutingTableSource.class)
+        );
+    }
+}
@@ -0,0 +1,76 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.hash.Hashing;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static com.google.common.hash.Hashing.md5;
+import static com.google.common.hash.Hashing.murmur3_128;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.lib.sharding.util.ConsistentHashing.consistentHash;
+import static org.testng.Assert.assertEquals;
+
+public class KeyHasherTest {
+    private static final long[] KEYS = {0L, 1L, -1L, 42L, Long.MIN_VALUE, Long.MAX_VALUE, 0xCAFEBABEL};
+
+    @Test
+    public void murmur3MatchesGuava() {
+        Murmur3KeyHasher hasher = new Murmur3KeyHasher();
+
+        for (long key : KEYS) {
+            assertEquals(hasher.hashLong(key), murmur3_128().hashLong(key).padToLong());
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextLong();
+            assertEquals(hasher.hashLong(key), murmur3_128().hashLong(key).padToLong());
+        }
+    }
+
+    @Test
+    public void primitiveAndBoxedPathsAgree() {
+        KeyHasher[] hashers = {new Murmur3KeyHasher(), new Md5KeyHasher()};
+
+        for (KeyHasher hasher : hashers) {
+            for (long key : KEYS) {
+                assertEquals(hasher.hashLong(key), hasher.hashKey(key));
+            }
+        }
+    }
+
+    @Test
+    public void md5KeepsLegacyPlacement() {
+        Md5KeyHasher hasher = new Md5KeyHasher();
+
+        for (long key : KEYS) {
+            for (int buckets = 1; buckets < 20; buckets++) {
+                assertEquals(
+                        consistentHash(hasher.hashLong(key), buckets),
+                        Hashing.consistentHash(md5().hashString(Long.toString(key), UTF_8), buckets)
+                );
+            }
+        }
+    }
+}
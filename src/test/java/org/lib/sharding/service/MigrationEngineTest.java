@@ -0,0 +1,251 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import org.jetbrains.annotations.Nullable;
+import org.jgroups.Address;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.HashRange;
+import org.lib.sharding.domain.MigrationEntry;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.repository.NodeLoads;
+import org.lib.sharding.repository.NodeRepository;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.Guice.createInjector;
+import static com.google.inject.name.Names.named;
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+public class MigrationEngineTest {
+    private static final int KEYS = 20000;
+
+    @Test
+    public void movesOnlyKeysWithNewOwner() throws Exception {
+        Injector injector = createInjector(binder -> binder.bind(RoutingStrategy.class).to(RingRoutingStrategy.class));
+        Fixture fixture = new Fixture(injector);
+
+        Migration migration = injector.getInstance(MigrationEngine.class)
+                .migrate(fixture.change, fixture.self, fixture.source, fixture.sink)
+                .getFuture().get(10, TimeUnit.SECONDS);
+
+        assertTrue(migration.isDone());
+        assertEquals(migration.getFailed(), 0);
+        assertEquals(migration.getQueued(), 0);
+        assertTrue(migration.getMigrated() > 0);
+        assertEquals(migration.getMigrated(), fixture.expectedMoved);
+
+        // ranges are known for the ring, so the source is asked for the moved part only
+        assertEquals(migration.getScanned(), fixture.expectedMoved);
+
+        NodeLocator locator = fixture.strategy.createPlacementLocator(fixture.change.getCurrent());
+        int written = 0;
+        for (ClusterNode node : fixture.change.getCurrent().getNodes()) {
+            for (Object key : fixture.sink.getEntries(node).keySet()) {
+                assertEquals(fixture.change.getCurrent().getNodes().get(locator.getNodeIndex(fixture.hasher.hashKey(key))), node);
+                assertFalse(fixture.source.data.containsKey(key));
+                written++;
+            }
+        }
+        assertEquals(written, fixture.expectedMoved);
+        assertEquals(fixture.source.data.size(), KEYS - fixture.expectedMoved);
+    }
+
+    @Test
+    public void spilledKeysAreMovedToTheirOwners() throws Exception {
+        Injector injector = createInjector(binder -> binder.bind(RoutingStrategy.class).to(BoundedLoadRoutingStrategy.class));
+        Fixture fixture = new Fixture(injector);
+
+        // the added node is overloaded, so its keys are served by other nodes for a while
+        List<ClusterNode> nodes = fixture.change.getCurrent().getNodes();
+        Map<Address, Double> demand = new HashMap<>();
+        for (ClusterNode node : nodes) {
+            demand.put(node.getAddress(), node.equals(fixture.added) ? 10.0 : 1.0);
+        }
+        injector.getInstance(NodeLoads.class).update(fixture.self.getAddress(), demand);
+
+        Migration migration = injector.getInstance(MigrationEngine.class)
+                .migrate(fixture.change, fixture.self, fixture.source, fixture.sink)
+                .getFuture().get(10, TimeUnit.SECONDS);
+
+        assertEquals(migration.getMigrated(), fixture.expectedMoved);
+        assertEquals(fixture.sink.getEntries(fixture.added).size(), fixture.expectedMoved);
+    }
+
+    @Test
+    public void rateLimitSlowsMigrationDown() throws Exception {
+        int rate = 2000;
+        Injector injector = createInjector(binder -> {
+            binder.bind(RoutingStrategy.class).to(RingRoutingStrategy.class);
+            binder.bindConstant().annotatedWith(named("sharding.migration.rate")).to((double) rate);
+            binder.bindConstant().annotatedWith(named("sharding.migration.batchSize")).to(100);
+        });
+        Fixture fixture = new Fixture(injector);
+
+        long start = System.nanoTime();
+        Migration migration = injector.getInstance(MigrationEngine.class)
+                .migrate(fixture.change, fixture.self, fixture.source, fixture.sink)
+                .getFuture().get(30, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(migration.getMigrated(), fixture.expectedMoved);
+        // the first batch is free
+        long minimal = (fixture.expectedMoved - 100) * 1000L / rate;
+        assertTrue(elapsed >= minimal * 0.9, "elapsed " + elapsed + " ms, expected at least " + minimal + " ms");
+    }
+
+    @Test
+    public void stuckMigrationDoesNotBlockTheNextOne() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        MigrationSink stuckSink = (target, entries) -> {
+            writing.countDown();
+            released.await();
+        };
+        Injector injector = createInjector(binder -> binder.bind(RoutingStrategy.class).to(RingRoutingStrategy.class));
+        Fixture fixture = new Fixture(injector);
+        ClusterMembershipService membershipService = mock(ClusterMembershipService.class);
+        when(membershipService.getSelfNode()).thenReturn(fixture.self);
+        MigratingRebalancingStrategy rebalancing = createInjector(binder -> {
+            binder.bind(MigrationEngine.class).toInstance(injector.getInstance(MigrationEngine.class));
+            binder.bind(RoutingStrategy.class).toInstance(fixture.strategy);
+            binder.bind(MigrationSource.class).toInstance(fixture.source);
+            binder.bind(MigrationSink.class).toInstance(stuckSink);
+            binder.bind(ClusterMembershipService.class).toInstance(membershipService);
+            binder.bindConstant().annotatedWith(named("sharding.migration.cancelTimeout")).to(200L);
+        }).getInstance(MigratingRebalancingStrategy.class);
+
+        try {
+            rebalancing.ownershipChanged(fixture.change);
+            Migration stuck = rebalancing.getLastMigration();
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            rebalancing.ownershipChanged(fixture.change);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(stuck.isCancelled());
+            assertFalse(stuck.isDone());
+            assertNotSame(rebalancing.getLastMigration(), stuck);
+            assertTrue(elapsed < 5000, "elapsed " + elapsed + " ms");
+        } finally {
+            released.countDown();
+        }
+    }
+
+    private static class Fixture {
+        private final RoutingStrategy strategy;
+        private final KeyHasher hasher;
+        private final ClusterNode self;
+        private final ClusterNode added;
+        private final OwnershipChange change;
+        private final MapSource source;
+        private final InMemoryMigrationSink sink;
+        private final int expectedMoved;
+
+        Fixture(Injector injector) {
+            strategy = injector.getInstance(RoutingStrategy.class);
+            hasher = injector.getInstance(KeyHasher.class);
+            sink = injector.getInstance(InMemoryMigrationSink.class);
+            NodeRepository repository = injector.getInstance(NodeRepository.class);
+
+            List<ClusterNode> nodes = nodes(6);
+            repository.setNodes(nodes.subList(0, 5));
+            self = nodes.get(0);
+            added = nodes.get(5);
+
+            RoutingTableChange tables = repository.sync(ImmutableSet.copyOf(nodes), self);
+            change = strategy.getOwnershipChange(tables.getPrevious(), tables.getCurrent());
+
+            NodeLocator before = strategy.createPlacementLocator(tables.getPrevious());
+            NodeLocator after = strategy.createPlacementLocator(tables.getCurrent());
+
+            // the keys this node has owned so far
+            source = new MapSource(hasher);
+            int moved = 0;
+            long key = 0;
+            while (source.data.size() < KEYS) {
+                long hash = hasher.hashKey(key);
+                if (tables.getPrevious().getNodes().get(before.getNodeIndex(hash)).equals(self)) {
+                    source.data.put(key, "value-" + key);
+                    if (!tables.getCurrent().getNodes().get(after.getNodeIndex(hash)).equals(self)) {
+                        moved++;
+                    }
+                }
+                key++;
+            }
+            expectedMoved = moved;
+        }
+    }
+
+    private static class MapSource implements MigrationSource {
+        private final Map<Object, Object> data = new ConcurrentHashMap<>();
+        private final KeyHasher hasher;
+
+        MapSource(KeyHasher hasher) {
+            this.hasher = hasher;
+        }
+
+        @Override
+        public Iterator<MigrationEntry> scan(@Nullable List<HashRange> ranges) {
+            List<MigrationEntry> entries = new ArrayList<>();
+            for (Map.Entry<Object, Object> entry : data.entrySet()) {
+                if (ranges == null || contains(ranges, hasher.hashKey(entry.getKey()))) {
+                    entries.add(new MigrationEntry(entry.getKey(), entry.getValue(), 16));
+                }
+            }
+            return entries.iterator();
+        }
+
+        @Override
+        public void migrated(List<MigrationEntry> entries) {
+            for (MigrationEntry entry : entries) {
+                data.remove(entry.getKey());
+            }
+        }
+
+        private static boolean contains(List<HashRange> ranges, long hash) {
+            for (HashRange range : ranges) {
+                if (range.contains(hash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
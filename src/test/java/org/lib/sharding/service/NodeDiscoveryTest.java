@@ -0,0 +1,168 @@
+package org.lib.sharding.service;
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Module;
+import org.jgroups.blocks.MethodCall;
+import org.lib.sharding.configuration.FirstServerRootModule;
+import org.lib.sharding.configuration.SecondServerRootModule;
+import org.lib.sharding.domain.ClusterNode;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * The node which updates the nodes list asks all members for their info at once and waits
+ * no longer than the discovery timeout.
+ */
+public class NodeDiscoveryTest extends BaseMultipleInjectorTest {
+    private static final String COORDINATOR_ONLY = "sharding.cluster.update.coordinatorOnly";
+    private static final String DISCOVERY_TIMEOUT = "sharding.cluster.discovery.timeout";
+    private static final String NODE_WEIGHT = "sharding.node.weight";
+
+    private static final long REPLY_DELAY = 4000L;
+
+    private SlowNodeInfoService membershipService2;
+
+    private ClusterMembershipService membershipService1;
+
+    private ShardingMetrics metrics1;
+
+    @Test
+    public void memberInfoIsCollected() throws InterruptedException {
+        membershipService1.start("node1");
+        try {
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService1.getNodes().size() == 2);
+
+                assertEquals(getNode("node2").getWeight(), 2.0);
+                assertEquals(metrics1.getRpcTimeouts(), 0);
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
+    }
+
+    @Test
+    public void silentMemberDoesNotHoldUpdateBack() throws InterruptedException {
+        membershipService2.replyDelay = REPLY_DELAY;
+
+        membershipService1.start("node1");
+        try {
+            membershipService2.start("node2");
+            try {
+                awaitTrue(() -> membershipService1.getNodes().size() == 2);
+
+                // known by its address only
+                assertEquals(getNode("node2").getWeight(), ClusterNode.DEFAULT_WEIGHT);
+                assertEquals(metrics1.getRpcTimeouts(), 1);
+                assertTrue(metrics1.getConvergenceLatencyMaxMillis() < REPLY_DELAY,
+                        "convergence took " + metrics1.getConvergenceLatencyMaxMillis() + " ms");
+            } finally {
+                membershipService2.stop();
+            }
+        } finally {
+            membershipService1.stop();
+        }
+    }
+
+    private ClusterNode getNode(String name) {
+        return membershipService1.getNodes().stream()
+                .filter(node -> node.getAddress().toString().equals(name))
+                .findFirst()
+                .get();
+    }
+
+    @BeforeMethod(dependsOnMethods = "createInjectors")
+    protected void setUp() {
+        membershipService1 = firstServerInjector.getInstance(ClusterMembershipService.class);
+        metrics1 = firstServerInjector.getInstance(ShardingMetrics.class);
+
+        membershipService2 = secondServerInjector.getInstance(SlowNodeInfoService.class);
+    }
+
+    @Override
+    protected Set<Module> getFirstInjectorModules() {
+        return ImmutableSet.of(
+                new FirstServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(COORDINATOR_ONLY, "true");
+                        properties.setProperty(DISCOVERY_TIMEOUT, "1000");
+                        return properties;
+                    }
+                }
+        );
+    }
+
+    @Override
+    protected Set<Module> getSecondInjectorModules() {
+        return ImmutableSet.of(
+                new SecondServerRootModule() {
+                    @Override
+                    protected Properties loadProperties() throws Exception {
+                        Properties properties = super.loadProperties();
+                        properties.setProperty(COORDINATOR_ONLY, "true");
+                        properties.setProperty(NODE_WEIGHT, "2.0");
+                        return properties;
+                    }
+                },
+                binder -> binder.bind(ClusterMembershipService.class).to(SlowNodeInfoService.class)
+        );
+    }
+
+    /**
+     * Answers the node info requests of other members late.
+     */
+    @Singleton
+    static class SlowNodeInfoService extends ClusterMembershipServiceImpl {
+        private volatile long replyDelay;
+
+        @Override
+        public ClusterNode getSelfNode() {
+            if (replyDelay > 0 && isRemoteCall()) {
+                try {
+                    Thread.sleep(replyDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getSelfNode();
+        }
+
+        private static boolean isRemoteCall() {
+            return Arrays.stream(Thread.currentThread().getStackTrace())
+                    .anyMatch(element -> element.getClassName().equals(MethodCall.class.getName()));
+        }
+    }
+}
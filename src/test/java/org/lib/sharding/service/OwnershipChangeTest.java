@@ -0,0 +1,129 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.OwnershipChange;
+import org.lib.sharding.domain.OwnershipTransfer;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.domain.RoutingTableChange;
+import org.lib.sharding.repository.NodeRepository;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.google.inject.Guice.createInjector;
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class OwnershipChangeTest {
+    private static final int HASHES = 100000;
+
+    @DataProvider
+    public Object[][] strategies() {
+        return new Object[][]{
+                {JumpRoutingStrategy.class},
+                {RingRoutingStrategy.class},
+                {RendezvousRoutingStrategy.class}
+        };
+    }
+
+    @Test(dataProvider = "strategies")
+    public void transfersCoverMovedKeys(Class<? extends RoutingStrategy> strategyClass) {
+        Injector injector = createInjector(binder -> binder.bind(RoutingStrategy.class).to(strategyClass));
+        RoutingStrategy strategy = injector.getInstance(RoutingStrategy.class);
+        NodeRepository repository = injector.getInstance(NodeRepository.class);
+
+        List<ClusterNode> nodes = nodes(8);
+        repository.setNodes(nodes.subList(0, 6));
+        // drops a node from the middle and adds two
+        Set<ClusterNode> actual = ImmutableSet.of(nodes.get(0), nodes.get(1), nodes.get(3), nodes.get(4), nodes.get(5), nodes.get(6), nodes.get(7));
+        RoutingTableChange tables = repository.sync(actual, nodes.get(0));
+
+        OwnershipChange change = strategy.getOwnershipChange(tables.getPrevious(), tables.getCurrent());
+        NodeLocator before = strategy.createLocator(tables.getPrevious());
+        NodeLocator after = strategy.createLocator(tables.getCurrent());
+
+        Random random = new Random(42);
+        int moved = 0;
+        for (int i = 0; i < HASHES; i++) {
+            long hash = random.nextLong();
+            ClusterNode from = tables.getPrevious().getNodes().get(before.getNodeIndex(hash));
+            ClusterNode to = tables.getCurrent().getNodes().get(after.getNodeIndex(hash));
+
+            OwnershipTransfer transfer = find(change, from, to);
+            if (!from.equals(to)) {
+                moved++;
+                assertNotNull(transfer, from + " -> " + to);
+                assertTrue(transfer.contains(hash));
+            } else if (strategyClass == RingRoutingStrategy.class) {
+                for (OwnershipTransfer any : change.getTransfers()) {
+                    assertFalse(any.contains(hash));
+                }
+            }
+        }
+
+        assertEquals(change.getMovedFraction(), (double) moved / HASHES, 0.01);
+    }
+
+    @Test(dataProvider = "strategies")
+    public void nothingMovesWithoutChanges(Class<? extends RoutingStrategy> strategyClass) {
+        RoutingStrategy strategy = createInjector(binder -> binder.bind(RoutingStrategy.class).to(strategyClass))
+                .getInstance(RoutingStrategy.class);
+
+        List<ClusterNode> nodes = nodes(4);
+        assertTrue(strategy.getOwnershipChange(new RoutingTable(1, nodes), new RoutingTable(2, nodes)).isEmpty());
+        assertTrue(strategy.getOwnershipChange(RoutingTable.EMPTY, new RoutingTable(1, nodes)).isEmpty());
+    }
+
+    @Test
+    public void ringRangesAreExact() {
+        RoutingStrategy strategy = createInjector(binder -> binder.bind(RoutingStrategy.class).to(RingRoutingStrategy.class))
+                .getInstance(RoutingStrategy.class);
+
+        List<ClusterNode> nodes = nodes(3);
+        OwnershipChange change = strategy.getOwnershipChange(new RoutingTable(1, nodes.subList(0, 2)), new RoutingTable(2, nodes));
+
+        for (OwnershipTransfer transfer : change.getTransfers()) {
+            assertEquals(transfer.getTo(), nodes.get(2));
+            assertNotNull(transfer.getRanges());
+        }
+        assertEquals(change.getTransfersTo(nodes.get(2)).size(), 2);
+        assertEquals(change.getMovedFraction(), 1.0 / 3, 0.1);
+    }
+
+    private static OwnershipTransfer find(OwnershipChange change, ClusterNode from, ClusterNode to) {
+        for (OwnershipTransfer transfer : change.getTransfersFrom(from)) {
+            if (transfer.getTo().equals(to)) {
+                return transfer;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.lib.sharding.domain.RoutingTable;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RebalancingDispatcherTest {
+
+    @Test
+    public void changesWaitingBehindRunningOneAreMerged() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<long[]> calls = new CopyOnWriteArrayList<>();
+        RebalancingDispatcher dispatcher = new RebalancingDispatcher(
+                (previous, current) -> {
+                    calls.add(new long[]{previous.getVersion(), current.getVersion()});
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                },
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        dispatcher.dispatch(table(0), table(1));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        dispatcher.dispatch(table(1), table(2));
+        dispatcher.dispatch(table(2), table(3));
+        dispatcher.dispatch(table(3), table(4));
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(calls.size(), 2);
+        assertEquals(calls.get(0), new long[]{0, 1});
+        assertEquals(calls.get(1), new long[]{1, 4});
+        assertEquals(dispatcher.getSuperseded(), 2);
+    }
+
+    @Test
+    public void staleChangeIsDropped() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        List<Long> versions = new CopyOnWriteArrayList<>();
+        RebalancingDispatcher dispatcher = new RebalancingDispatcher(
+                (previous, current) -> {
+                    versions.add(current.getVersion());
+                    done.countDown();
+                },
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        dispatcher.dispatch(table(4), table(5));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(table(2), table(3));
+        dispatcher.dispatch(table(4), table(5));
+        Thread.sleep(100);
+
+        assertEquals(versions, ImmutableList.of(5L));
+    }
+
+    @Test
+    public void changeIsBasedOnLastDispatchedTable() throws InterruptedException {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<long[]> calls = new CopyOnWriteArrayList<>();
+        RebalancingDispatcher dispatcher = new RebalancingDispatcher(
+                (previous, current) -> {
+                    calls.add(new long[]{previous.getVersion(), current.getVersion()});
+                    first.countDown();
+                    done.countDown();
+                },
+                new ThreadFactoryBuilder().setDaemon(true).build()
+        );
+
+        dispatcher.dispatch(table(0), table(1));
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        // versions 2 and 3 have been published as whole tables, without a dispatch
+        dispatcher.dispatch(table(3), table(4));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(calls.get(0), new long[]{0, 1});
+        assertEquals(calls.get(1), new long[]{1, 4});
+    }
+
+    private static RoutingTable table(long version) {
+        return new RoutingTable(version, ImmutableList.of());
+    }
+}
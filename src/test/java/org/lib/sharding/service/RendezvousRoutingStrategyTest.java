@@ -0,0 +1,61 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.lib.sharding.domain.ClusterNode;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.testng.Assert.assertEquals;
+
+public class RendezvousRoutingStrategyTest extends BaseRoutingStrategyTest {
+
+    @Override
+    protected Class<? extends RoutingStrategy> getRoutingStrategyClass() {
+        return RendezvousRoutingStrategy.class;
+    }
+
+    @Test
+    public void weightChangeMovesKeysOnlyOfReweightedNode() {
+        List<ClusterNode> nodes = nodes(3);
+        nodeRepository.setNodes(nodes);
+        ClusterNode[] before = route();
+
+        ClusterNode reweighted = nodes.get(2);
+        reweighted.getProperties().put(ClusterNode.WEIGHT, 2);
+        nodeRepository.setNodes(nodes);
+        ClusterNode[] after = route();
+
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            if (before[key].equals(reweighted)) {
+                assertEquals(after[key], reweighted);
+            } else if (!after[key].equals(reweighted)) {
+                assertEquals(after[key], before[key]);
+            } else {
+                moved++;
+            }
+        }
+        assertEquals(moved / (double) KEYS, 0.5 - 1.0 / 3, 0.02);
+    }
+}
@@ -0,0 +1,129 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableList;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.jgroups.util.UUID.randomUUID;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class RoutingCacheTest {
+    private final ClusterNode node1 = new ClusterNode(randomUUID());
+    private final ClusterNode node2 = new ClusterNode(randomUUID());
+
+    @Test
+    public void hitsAndMisses() {
+        RoutingCache cache = new RoutingCache(1024, 4);
+
+        assertNull(cache.get(42L, 1));
+        cache.put(42L, 1, node1);
+        assertEquals(cache.get(42L, 1), node1);
+
+        assertNull(cache.get("key", 1));
+        cache.put("key", 1, node2);
+        assertEquals(cache.get("key", 1), node2);
+        assertEquals(cache.get(42L, 1), node1);
+
+        assertEquals(cache.getHits(), 3);
+        assertEquals(cache.getMisses(), 2);
+        assertEquals(cache.getHitRatio(), 0.6, 0.001);
+    }
+
+    @Test
+    public void newVersionInvalidatesEntries() {
+        RoutingCache cache = new RoutingCache(1024, 4);
+        cache.put(42L, 1, node1);
+
+        assertNull(cache.get(42L, 2));
+
+        cache.put(42L, 2, node2);
+        assertEquals(cache.get(42L, 2), node2);
+        assertNull(cache.get(42L, 1));
+    }
+
+    @Test
+    public void tablesOfDifferentEpochsHaveDifferentTags() {
+        RoutingTable table = new RoutingTable(1, 5, ImmutableList.of(node1));
+        RoutingTable restarted = new RoutingTable(2, 5, ImmutableList.of(node2));
+
+        RoutingCache cache = new RoutingCache(1024, 4);
+        cache.put(42L, RoutingCache.tag(table), node1);
+
+        assertNotEquals(RoutingCache.tag(restarted), RoutingCache.tag(table));
+        assertNull(cache.get(42L, RoutingCache.tag(restarted)));
+    }
+
+    @Test
+    public void sizeIsBounded() {
+        RoutingCache cache = new RoutingCache(100, 3);
+        assertEquals(cache.getCapacity(), 128);
+
+        for (long key = 0; key < 10000; key++) {
+            cache.put(key, 1, node1);
+        }
+
+        int cached = 0;
+        for (long key = 0; key < 10000; key++) {
+            if (cache.get(key, 1) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached <= cache.getCapacity());
+    }
+
+    @Test
+    public void readersSeeWholeEntries() throws Exception {
+        RoutingCache cache = new RoutingCache(64, 2);
+        AtomicBoolean mixed = new AtomicBoolean();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (long key = 0; key < 200000; key++) {
+                    ClusterNode node = key % 2 == 0 ? node1 : node2;
+                    ClusterNode cached = cache.get(key % 1000, 1);
+                    if (cached != null && cached != (key % 1000 % 2 == 0 ? node1 : node2)) {
+                        mixed.set(true);
+                    }
+                    cache.put(key, 1, node);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(mixed.get());
+    }
+}
@@ -0,0 +1,153 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Injector;
+import org.jetbrains.annotations.NotNull;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.domain.RoutingTable;
+import org.lib.sharding.repository.NodeRepository;
+import org.lib.sharding.repository.RoutingTableListener;
+import org.testng.annotations.Test;
+
+import javax.management.ObjectName;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.inject.Guice.createInjector;
+import static com.google.inject.name.Names.named;
+import static org.jgroups.util.Util.getMBeanServer;
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+public class RoutingTableClientTest {
+
+    @Test
+    public void clientFollowsMemberTables() throws Exception {
+        NodeRepository member = createInjector().getInstance(NodeRepository.class);
+        Injector client = createInjector(binder -> binder.bind(RoutingTableSource.class).toInstance(new InProcessRoutingTableSource(member)));
+        NodeRepository cache = client.getInstance(NodeRepository.class);
+        ClientNodeRouter router = client.getInstance(ClientNodeRouter.class);
+        RoutingTableClient tableClient = client.getInstance(RoutingTableClient.class);
+
+        tableClient.start("client");
+        CompletableFuture<ClusterNode> node = router.getNodeByKeyAsync(42L);
+        assertFalse(node.isDone());
+
+        List<ClusterNode> nodes = nodes(4);
+        member.setNodes(nodes.subList(0, 2));
+        assertEquals(node.get(1, TimeUnit.SECONDS), router.getNodeByKey(42L));
+        assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+        assertNotSame(cache.getRoutingTable(), member.getRoutingTable());
+
+        member.sync(ImmutableSet.copyOf(nodes), nodes.get(0));
+        assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+
+        tableClient.stop();
+        member.remove(nodes.get(3));
+        assertEquals(cache.getRoutingTable().getVersion(), member.getRoutingTable().getVersion() - 1);
+    }
+
+    @Test
+    public void restartedClusterReplacesCachedTable() throws Exception {
+        NodeRepository member = createInjector().getInstance(NodeRepository.class);
+        Injector client = createInjector(binder -> binder.bind(RoutingTableSource.class).toInstance(new InProcessRoutingTableSource(member)));
+        NodeRepository cache = client.getInstance(NodeRepository.class);
+        RoutingTableClient tableClient = client.getInstance(RoutingTableClient.class);
+
+        List<ClusterNode> nodes = nodes(3);
+        member.setRoutingTable(new RoutingTable(5, 40, nodes.subList(0, 2)));
+        tableClient.start("client");
+        try {
+            assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+
+            // the first table of the restarted cluster has a lower version
+            member.setRoutingTable(new RoutingTable(6, 1, nodes.subList(1, 3)));
+            assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+        } finally {
+            tableClient.stop();
+        }
+    }
+
+    @Test
+    public void metricsAreRegisteredWhileStarted() throws Exception {
+        NodeRepository member = createInjector().getInstance(NodeRepository.class);
+        Injector client = createInjector(binder -> binder.bind(RoutingTableSource.class).toInstance(new InProcessRoutingTableSource(member)));
+        RoutingTableClient tableClient = client.getInstance(RoutingTableClient.class);
+        ObjectName mbeanName = new ObjectName("org.lib.sharding:type=ShardingMetrics,name=" + ObjectName.quote("client"));
+
+        tableClient.start("client");
+        try {
+            assertTrue(getMBeanServer().isRegistered(mbeanName));
+        } finally {
+            tableClient.stop();
+        }
+        assertFalse(getMBeanServer().isRegistered(mbeanName));
+    }
+
+    @Test
+    public void lostPushesAreFetched() throws Exception {
+        NodeRepository member = createInjector().getInstance(NodeRepository.class);
+        InProcessRoutingTableSource transport = new InProcessRoutingTableSource(member);
+        // a transport which loses every push
+        RoutingTableSource source = new RoutingTableSource() {
+            @NotNull
+            @Override
+            public RoutingTable fetch() throws Exception {
+                return transport.fetch();
+            }
+
+            @NotNull
+            @Override
+            public AutoCloseable subscribe(@NotNull RoutingTableListener listener) {
+                return () -> {
+                };
+            }
+        };
+
+        Injector client = createInjector(binder -> {
+            binder.bind(RoutingTableSource.class).toInstance(source);
+            binder.bindConstant().annotatedWith(named("sharding.router.client.refreshPeriod")).to(50L);
+        });
+        NodeRepository cache = client.getInstance(NodeRepository.class);
+        RoutingTableClient tableClient = client.getInstance(RoutingTableClient.class);
+
+        member.setNodes(nodes(2));
+        tableClient.start("client");
+        try {
+            assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+
+            member.setNodes(nodes(3));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!cache.getRoutingTable().equals(member.getRoutingTable()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(cache.getRoutingTable(), member.getRoutingTable());
+        } finally {
+            tableClient.stop();
+        }
+    }
+}
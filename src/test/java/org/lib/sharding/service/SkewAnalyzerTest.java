@@ -0,0 +1,160 @@
+package org.lib.sharding.service;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.google.common.collect.Iterables;
+import com.google.inject.Injector;
+import org.lib.sharding.domain.ClusterNode;
+import org.lib.sharding.repository.NodeRepository;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.google.inject.Guice.createInjector;
+import static com.google.inject.name.Names.named;
+import static org.lib.sharding.service.ClientNodeRouterTest.nodes;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SkewAnalyzerTest {
+    private static final long HOT_KEY = 42;
+
+    @Test
+    public void hotKeyAndItsNodeAreFound() {
+        Injector injector = createInjector(binder -> binder.bindConstant().annotatedWith(named("sharding.metrics.skew.sampleRate")).to(1.0));
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+        SkewAnalyzer analyzer = injector.getInstance(SkewAnalyzer.class);
+
+        List<ClusterNode> nodes = nodes(4);
+        nodeRepository.setNodes(nodes);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // a quarter of the requests go to a single key
+            long key = i % 4 == 0 ? HOT_KEY : random.nextInt(100000);
+            router.getNodeByKey(key);
+        }
+
+        assertEquals(analyzer.getSampledRequests(), 100000);
+
+        long perNode = 0;
+        for (long samples : analyzer.getSamplesPerNode().values()) {
+            perNode += samples;
+        }
+        assertEquals(perNode, 100000);
+
+        Map<String, Long> heavyHitters = analyzer.getHeavyHitters();
+        assertTrue(heavyHitters.size() <= 16);
+        Map.Entry<String, Long> hottest = Iterables.getFirst(heavyHitters.entrySet(), null);
+        assertEquals(hottest.getKey(), String.valueOf(HOT_KEY));
+        assertTrue(hottest.getValue() >= 25000);
+
+        assertEquals(analyzer.getHottestNode(), router.getNodeByKey(HOT_KEY).getAddress().toString());
+        assertTrue(analyzer.getNodeImbalance() > 1.5, "imbalance " + analyzer.getNodeImbalance());
+        assertTrue(analyzer.getBucketImbalance() > 1.5, "imbalance " + analyzer.getBucketImbalance());
+
+        analyzer.reset();
+        assertEquals(analyzer.getSampledRequests(), 0);
+        assertTrue(analyzer.getHeavyHitters().isEmpty());
+        assertNull(analyzer.getHottestNode());
+    }
+
+    @Test
+    public void uniformKeysAreBalanced() {
+        Injector injector = createInjector(binder -> binder.bindConstant().annotatedWith(named("sharding.metrics.skew.sampleRate")).to(0.5));
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+        SkewAnalyzer analyzer = injector.getInstance(SkewAnalyzer.class);
+
+        nodeRepository.setNodes(nodes(4));
+        for (long key = 0; key < 200000; key++) {
+            router.getNodeByKey(key);
+        }
+
+        assertTrue(Math.abs(analyzer.getSampledRequests() - 100000) < 2000);
+        assertTrue(analyzer.getNodeImbalance() < 1.2, "imbalance " + analyzer.getNodeImbalance());
+        assertTrue(analyzer.getBucketImbalance() < 1.2, "imbalance " + analyzer.getBucketImbalance());
+    }
+
+    @Test
+    public void skewGoesAwayAfterWindow() throws InterruptedException {
+        Injector injector = createInjector(binder -> {
+            binder.bindConstant().annotatedWith(named("sharding.metrics.skew.sampleRate")).to(1.0);
+            binder.bindConstant().annotatedWith(named("sharding.metrics.skew.window")).to(500L);
+        });
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+        SkewAnalyzer analyzer = injector.getInstance(SkewAnalyzer.class);
+
+        nodeRepository.setNodes(nodes(4));
+        for (int i = 0; i < 10000; i++) {
+            router.getNodeByKey(HOT_KEY);
+        }
+        assertEquals(analyzer.getHottestNode(), router.getNodeByKey(HOT_KEY).getAddress().toString());
+        assertTrue(analyzer.getNodeImbalance() > 3, "imbalance " + analyzer.getNodeImbalance());
+
+        // both windows are over
+        Thread.sleep(1100);
+        assertEquals(analyzer.getSampledRequests(), 0);
+
+        for (long key = 0; key < 100000; key++) {
+            router.getNodeByKey(key);
+        }
+        assertTrue(analyzer.getNodeImbalance() < 1.2, "imbalance " + analyzer.getNodeImbalance());
+        assertTrue(analyzer.getHeavyHitters().getOrDefault(String.valueOf(HOT_KEY), 0L) < 100);
+    }
+
+    @Test
+    public void leftNodesAreForgotten() {
+        Injector injector = createInjector(binder -> binder.bindConstant().annotatedWith(named("sharding.metrics.skew.sampleRate")).to(1.0));
+        NodeRepository nodeRepository = injector.getInstance(NodeRepository.class);
+        ClientNodeRouter router = injector.getInstance(ClientNodeRouter.class);
+        SkewAnalyzer analyzer = injector.getInstance(SkewAnalyzer.class);
+
+        List<ClusterNode> nodes = nodes(4);
+        nodeRepository.setNodes(nodes);
+        for (long key = 0; key < 1000; key++) {
+            router.getNodeByKey(key);
+        }
+        assertEquals(analyzer.getSamplesPerNode().size(), 4);
+
+        nodeRepository.remove(nodes.get(2));
+
+        assertEquals(analyzer.getSamplesPerNode().size(), 3);
+        assertFalse(analyzer.getSamplesPerNode().containsKey(nodes.get(2).getAddress().toString()));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        Injector injector = createInjector();
+        injector.getInstance(NodeRepository.class).setNodes(nodes(2));
+        injector.getInstance(ClientNodeRouter.class).getNodeByKey(HOT_KEY);
+
+        SkewAnalyzer analyzer = injector.getInstance(SkewAnalyzer.class);
+        assertFalse(analyzer.isEnabled());
+        assertEquals(analyzer.getSampledRequests(), 0);
+    }
+}
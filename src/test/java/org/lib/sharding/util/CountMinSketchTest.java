@@ -0,0 +1,57 @@
+package org.lib.sharding.util;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CountMinSketchTest {
+
+    @Test
+    public void estimateIsNeverBelowCount() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        Random random = new Random(42);
+        long[] hashes = random.longs(5000).toArray();
+        long total = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            sketch.add(hashes[i], i % 10 + 1);
+            total += i % 10 + 1;
+        }
+
+        int overestimated = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            long estimate = sketch.estimate(hashes[i]);
+            assertTrue(estimate >= i % 10 + 1);
+            if (estimate > i % 10 + 1 + Math.E * total / 1024) {
+                overestimated++;
+            }
+        }
+        // exp(-4) of the keys at most, with a margin
+        assertTrue(overestimated < hashes.length * 0.05, "overestimated " + overestimated);
+
+        sketch.clear();
+        assertEquals(sketch.estimate(hashes[0]), 0);
+    }
+}
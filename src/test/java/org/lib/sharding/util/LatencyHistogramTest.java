@@ -0,0 +1,66 @@
+package org.lib.sharding.util;
+
+
+/*
+ * Copyright (C) 2015 by Denis M. Gabaydulin
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguous() {
+        long previousUpper = -1;
+        for (int index = 0; index <= LatencyHistogram.index(Long.MAX_VALUE); index++) {
+            long upper = LatencyHistogram.upperBound(index);
+            assertTrue(upper > previousUpper, "index " + index);
+            assertEquals(LatencyHistogram.index(previousUpper + 1), index);
+            assertEquals(LatencyHistogram.index(upper), index);
+            previousUpper = upper;
+        }
+        assertEquals(previousUpper, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void percentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.abs(random.nextGaussian() * 1000000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(histogram.getCount(), values.length);
+        assertEquals(histogram.getMax(), values[values.length - 1]);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long estimate = histogram.getPercentile(percentile);
+            assertTrue(estimate >= exact && estimate <= exact + exact / 16 + 1,
+                    "percentile " + percentile + ": exact " + exact + ", estimate " + estimate);
+        }
+    }
+}